@@ -0,0 +1,123 @@
+package world.bentobox.level.calculators;
+
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.Material;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import world.bentobox.level.calculators.IslandLevelCalculator.ChunkPair;
+import world.bentobox.level.calculators.SyntheticChunkSnapshot.Layout;
+import world.bentobox.level.config.BlockTable;
+
+/**
+ * Measures the scan of one chunk and the counting of its blocks. Scores are in nanoseconds per block of the chunk.
+ * Run with -prof gc to see the allocation rate.
+ * @author tastybento
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(CalculatorFixture.BLOCKS_PER_CHUNK)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ScanBenchmark {
+
+    private static final Material[] MATERIALS = Material.values();
+
+    @Param({"VOID", "SKYBLOCK", "MEGA_BASE"})
+    private Layout layout;
+
+    private CalculatorFixture fixture;
+    private IslandLevelCalculator calc;
+    private ChunkPair chunk;
+    // Blocks of the chunk in scan order, for counting without the scan
+    private long[] entries;
+    private int[] ordinals;
+    // Tally of the whole chunk, for merging
+    private ScanTally scanned;
+
+    @Setup
+    public void setUp() {
+        fixture = new CalculatorFixture();
+        calc = fixture.newCalculator();
+        chunk = fixture.newChunk(layout);
+        entries = new long[CalculatorFixture.BLOCKS_PER_CHUNK];
+        ordinals = new int[CalculatorFixture.BLOCKS_PER_CHUNK];
+        int i = 0;
+        for (int x = 0; x < 16; x++) {
+            for (int z = 0; z < 16; z++) {
+                for (int y = CalculatorFixture.MIN_HEIGHT; y < CalculatorFixture.MAX_HEIGHT; y++) {
+                    Material m = chunk.chunkSnapshot().getBlockType(x, y, z);
+                    ordinals[i] = m.ordinal();
+                    entries[i++] = chunk.table().get(m);
+                }
+            }
+        }
+        scanned = scan();
+    }
+
+    /**
+     * Scan the chunk snapshot into a new tally, as the scan threads do
+     * @return tally
+     */
+    @Benchmark
+    public ScanTally scan() {
+        ScanTally tally = new ScanTally(chunk.table());
+        calc.scanAsync(chunk, tally);
+        return tally;
+    }
+
+    /**
+     * Count the blocks of the chunk one at a time, without reading the snapshot
+     * @return tally
+     */
+    @Benchmark
+    public ScanTally count() {
+        ScanTally tally = new ScanTally(chunk.table());
+        for (int i = 0; i < entries.length; i++) {
+            tally.add(entries[i], ordinals[i], false, 1);
+        }
+        return tally;
+    }
+
+    /**
+     * Merge the tally of the chunk into the results, using up the block limits in scan order
+     * @return number of blocks over the limits so far
+     */
+    @Benchmark
+    public long merge() {
+        if (calc.getResults().mdCount.size() > Integer.MAX_VALUE / 2) {
+            // Start again before the counts overflow
+            calc = fixture.newCalculator();
+        }
+        calc.mergeTally(scanned);
+        return calc.getResults().ofCount.size();
+    }
+
+    /**
+     * Cost of reading the table entry for every block, for comparison with the other benchmarks
+     * @return sum of the block values
+     */
+    @Benchmark
+    public long lookUp() {
+        BlockTable table = chunk.table();
+        long sum = 0;
+        for (int i = 0; i < ordinals.length; i++) {
+            sum += BlockTable.getValue(table.get(MATERIALS[ordinals[i]]));
+        }
+        return sum;
+    }
+}
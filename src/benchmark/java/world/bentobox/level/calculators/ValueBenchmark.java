@@ -0,0 +1,101 @@
+package world.bentobox.level.calculators;
+
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import world.bentobox.level.config.BlockConfig;
+
+/**
+ * Measures looking up block values, the level formula and the end of a calculation. Scores are in nanoseconds per call.
+ * @author tastybento
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ValueBenchmark {
+
+    private static final Material[] MATERIALS = Material.values();
+
+    @Param({"blocks / level_cost", "sqrt(blocks) * 2 + (blocks / level_cost) ^ 0.8"})
+    private String formula;
+
+    private BlockConfig blockConfig;
+    private World world;
+    private LevelFormula levelFormula;
+    private IslandLevelCalculator calc;
+    private int next;
+    private long blocks;
+
+    @Setup
+    public void setUp() {
+        CalculatorFixture fixture = new CalculatorFixture();
+        blockConfig = fixture.blockConfig;
+        world = fixture.world;
+        levelFormula = LevelFormula.compile(formula);
+        when(fixture.addon.getLevelFormula()).thenReturn(levelFormula);
+        calc = fixture.newCalculator();
+        // Results of a scanned mega base, so the tidy up has something to work on
+        ScanTally tally = new ScanTally(blockConfig.getTable(world));
+        calc.scanAsync(fixture.newChunk(SyntheticChunkSnapshot.Layout.MEGA_BASE), tally);
+        calc.mergeTally(tally);
+    }
+
+    /**
+     * Value of each material in turn
+     * @return value or null
+     */
+    @Benchmark
+    public Integer getValue() {
+        next = next + 1 == MATERIALS.length ? 0 : next + 1;
+        return blockConfig.getValue(world, MATERIALS[next]);
+    }
+
+    /**
+     * Level for a changing number of points
+     * @return level
+     */
+    @Benchmark
+    public double evaluate() {
+        blocks = (blocks + 7919) & 0xFFFFFFFL;
+        return levelFormula.evaluate(blocks, 100);
+    }
+
+    /**
+     * Points needed for the next level, which evaluates the formula many times unless it is the default
+     * @return points
+     */
+    @Benchmark
+    public long pointsToNextLevel() {
+        blocks = (blocks + 7919) & 0xFFFFFFFL;
+        return levelFormula.pointsToNextLevel(blocks, 100);
+    }
+
+    /**
+     * Work out the level from the counts. Calls to the addon and island are mocked.
+     * @return results
+     */
+    @Benchmark
+    public Results tidyUp() {
+        calc.tidyUp();
+        return calc.getResults();
+    }
+}
@@ -26,9 +26,15 @@ import world.bentobox.bentobox.api.events.BentoBoxReadyEvent;
 import world.bentobox.bentobox.api.user.User;
 import world.bentobox.bentobox.database.objects.Island;
 import world.bentobox.bentobox.util.Util;
+import world.bentobox.level.calculators.BulkRecalculator;
+import world.bentobox.level.calculators.CalculationMetrics;
+import world.bentobox.level.calculators.ChunkTallyCache;
+import world.bentobox.level.calculators.LevelFormula;
+import world.bentobox.level.calculators.LevelTracker;
 import world.bentobox.level.calculators.Pipeliner;
 import world.bentobox.level.commands.AdminLevelCommand;
 import world.bentobox.level.commands.AdminLevelStatusCommand;
+import world.bentobox.level.commands.AdminRecalculateCommand;
 import world.bentobox.level.commands.AdminSetInitialLevelCommand;
 import world.bentobox.level.commands.AdminTopCommand;
 import world.bentobox.level.commands.IslandLevelCommand;
@@ -36,6 +42,7 @@ import world.bentobox.level.commands.IslandTopCommand;
 import world.bentobox.level.commands.IslandValueCommand;
 import world.bentobox.level.config.BlockConfig;
 import world.bentobox.level.config.ConfigSettings;
+import world.bentobox.level.listeners.BlockChangeListener;
 import world.bentobox.level.listeners.IslandActivitiesListeners;
 import world.bentobox.level.listeners.JoinLeaveListener;
 import world.bentobox.level.objects.LevelsData;
@@ -57,6 +64,11 @@ public class Level extends Addon implements Listener {
     private Config<ConfigSettings> configObject = new Config<>(this, ConfigSettings.class);
     private BlockConfig blockConfig;
     private Pipeliner pipeliner;
+    private LevelTracker levelTracker;
+    private ChunkTallyCache chunkCache;
+    private BulkRecalculator bulkRecalculator;
+    private CalculationMetrics metrics;
+    private volatile LevelFormula levelFormula;
     private LevelsManager manager;
     private boolean stackersEnabled;
     private boolean advChestEnabled;
@@ -91,14 +103,32 @@ public class Level extends Addon implements Listener {
     @Override
     public void onEnable() {
         loadBlockSettings();
+        // Check the level formula
+        try {
+            getLevelFormula();
+        } catch (IllegalArgumentException e) {
+            logError("Level calculation formula '" + settings.getLevelCalc() + "' is not valid: " + e.getMessage());
+        }
         // Start pipeline
+        metrics = new CalculationMetrics(this);
         pipeliner = new Pipeliner(this);
         // Start Manager
         manager = new LevelsManager(this);
+        bulkRecalculator = new BulkRecalculator(this);
         // Register listeners
         this.registerListener(new IslandActivitiesListeners(this));
         this.registerListener(new JoinLeaveListener(this));
         this.registerListener(this);
+        // Track block changes
+        if (settings.isIncrementalLevels()) {
+            levelTracker = new LevelTracker(this);
+        }
+        if (settings.getChunkCacheExpiry() > 0) {
+            chunkCache = new ChunkTallyCache(this);
+        }
+        if (levelTracker != null || chunkCache != null) {
+            this.registerListener(new BlockChangeListener(this));
+        }
         // Register commands for GameModes
         registeredGameModes.clear();
         getPlugin().getAddonsManager().getGameModeAddons().stream()
@@ -170,6 +200,8 @@ public class Level extends Addon implements Listener {
         manager.migrate();
         // Load TopTens
         manager.loadTopTens();
+        // Carry on with recalculations that were running when the server stopped
+        bulkRecalculator.resume();
         /*
          * DEBUG code to generate fake islands and then try to level them all.
         Bukkit.getScheduler().runTaskLater(getPlugin(), () -> {
@@ -315,6 +347,7 @@ public class Level extends Addon implements Listener {
             new AdminLevelCommand(this, adminCommand);
             new AdminTopCommand(this, adminCommand);
             new AdminLevelStatusCommand(this, adminCommand);
+            new AdminRecalculateCommand(this, adminCommand);
             if (getSettings().isZeroNewIslandLevels()) {
                 new AdminSetInitialLevelCommand(this, adminCommand);
             }
@@ -328,8 +361,24 @@ public class Level extends Addon implements Listener {
 
     @Override
     public void onDisable() {
+        // Save bulk recalculations so they carry on after a restart
+        if (bulkRecalculator != null) {
+            bulkRecalculator.stop();
+        }
         // Stop the pipeline
         this.getPipeliner().stop();
+        if (metrics != null) {
+            metrics.stop();
+        }
+        if (levelTracker != null) {
+            levelTracker.stop();
+        }
+        if (chunkCache != null) {
+            chunkCache.stop();
+        }
+        if (blockConfig != null) {
+            blockConfig.clearTables();
+        }
     }
 
     private void loadBlockSettings() {
@@ -372,6 +421,50 @@ public class Level extends Addon implements Listener {
         return pipeliner;
     }
 
+    /**
+     * @return the level calculation statistics
+     */
+    public CalculationMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the bulk recalculator
+     */
+    public BulkRecalculator getBulkRecalculator() {
+        return bulkRecalculator;
+    }
+
+    /**
+     * @return the level tracker, or null if incremental levels are not enabled
+     */
+    @Nullable
+    public LevelTracker getLevelTracker() {
+        return levelTracker;
+    }
+
+    /**
+     * @return the cache of chunk block counts, or null if it is not enabled
+     */
+    @Nullable
+    public ChunkTallyCache getChunkCache() {
+        return chunkCache;
+    }
+
+    /**
+     * Get the level formula. It is compiled again if the formula in the settings has changed.
+     * @return the compiled level formula
+     * @throws IllegalArgumentException if the formula is not valid
+     */
+    public LevelFormula getLevelFormula() {
+        LevelFormula formula = levelFormula;
+        if (formula == null || !formula.getFormula().equals(settings.getLevelCalc())) {
+            formula = LevelFormula.compile(settings.getLevelCalc());
+            levelFormula = formula;
+        }
+        return formula;
+    }
+
     /**
      * @return the manager
      */
@@ -20,11 +20,11 @@ import org.bukkit.World;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 
-import com.google.common.collect.Maps;
-
 import world.bentobox.bentobox.database.Database;
 import world.bentobox.bentobox.database.objects.Island;
+import world.bentobox.level.calculators.Pipeliner.Priority;
 import world.bentobox.level.calculators.Results;
+import world.bentobox.level.calculators.Results.Result;
 import world.bentobox.level.events.IslandLevelCalculatedEvent;
 import world.bentobox.level.events.IslandPreLevelEvent;
 import world.bentobox.level.objects.IslandLevels;
@@ -53,6 +53,8 @@ public class LevelsManager {
     private final Map<String, IslandLevels> levelsCache;
     // Top ten lists
     private final Map<World,TopTenData> topTenLists;
+    // Processed results of the level calculations that are running, by island unique id
+    private final Map<String, CompletableFuture<Results>> calculating = new ConcurrentHashMap<>();
 
 
     public LevelsManager(Level addon) {
@@ -142,29 +144,74 @@ public class LevelsManager {
      * @return completable future with the results of the calculation
      */
     public CompletableFuture<Results> calculateLevel(UUID targetPlayer, Island island) {
-        CompletableFuture<Results> result = new CompletableFuture<>();
+        return calculateLevel(targetPlayer, island, Priority.BACKGROUND);
+    }
+
+    /**
+     * Calculate the island level, set all island member's levels to the result and try to add the owner to the top ten
+     * @param targetPlayer - uuid of targeted player - owner or team member
+     * @param island - island to calculate
+     * @param priority - how urgent the calculation is
+     * @return completable future with the results of the calculation. If the island is already being calculated,
+     * this is the future of that calculation and the results are only saved once.
+     */
+    public CompletableFuture<Results> calculateLevel(UUID targetPlayer, Island island, Priority priority) {
         // Fire pre-level calc event
         IslandPreLevelEvent e = new IslandPreLevelEvent(targetPlayer, island);
         Bukkit.getPluginManager().callEvent(e);
         if (e.isCancelled()) {
             return CompletableFuture.completedFuture(null);
         }
-        // Add island to the pipeline
-        addon.getPipeliner().addIsland(island).thenAccept(r -> {
-            // Results are irrelevant because the island is unowned or deleted, or IslandLevelCalcEvent is cancelled
-            if (r == null || fireIslandLevelCalcEvent(targetPlayer, island, r)) {
-                System.out.println("results are null or event canceled");
-
-                result.complete(null);
+        // Add island to the pipeline. If it is already there, this only moves it up the queue.
+        CompletableFuture<Results> calc = addon.getPipeliner().addIsland(island, priority);
+        // Duplicate requests share the results of the first, so the results are only processed once
+        String id = island.getUniqueId();
+        CompletableFuture<Results> result = new CompletableFuture<>();
+        CompletableFuture<Results> running = calculating.putIfAbsent(id, result);
+        if (running != null) {
+            return running;
+        }
+        result.whenComplete((r, ex) -> calculating.remove(id, result));
+        calc.whenComplete((r, ex) -> {
+            try {
+                result.complete(processResults(targetPlayer, island, ex == null ? r : new Results(Result.ERROR)));
+            } catch (Exception ex2) {
+                addon.logError("Error saving the level of island " + id + ": " + ex2.getMessage());
+                result.complete(new Results(Result.ERROR));
             }
-            // Save result
-            setIslandResults(island.getWorld(), island.getOwner(), r);
-            // Save the island scan details
-            result.complete(r);
         });
         return result;
     }
 
+    /**
+     * Fire the calculated event and save the results of a level calculation
+     * @param targetPlayer - uuid of targeted player - owner or team member
+     * @param island - island that was calculated
+     * @param r - results of the calculation, may be null
+     * @return the results, or null if they are irrelevant or the event was canceled
+     */
+    @Nullable
+    private Results processResults(UUID targetPlayer, Island island, @Nullable Results r) {
+        // Nothing to save if the calculation did not finish
+        if (r != null && !r.getState().equals(Result.AVAILABLE)) {
+            return r;
+        }
+        // Results are irrelevant because the island is unowned or deleted, or IslandLevelCalcEvent is cancelled
+        if (r == null || fireIslandLevelCalcEvent(targetPlayer, island, r)) {
+            System.out.println("results are null or event canceled");
+            return null;
+        }
+        // Save result
+        long start = System.nanoTime();
+        setIslandResults(island.getWorld(), island.getOwner(), r);
+        addon.getMetrics().getSave().recordSince(start);
+        // Track block changes from here on
+        if (addon.getLevelTracker() != null) {
+            addon.getLevelTracker().reset(island, r);
+        }
+        return r;
+    }
+
     /**
      * Fires the IslandLevelCalculatedEvent and returns true if it is canceled
      * @param targetPlayer - target player
@@ -417,8 +464,8 @@ public class LevelsManager {
         if (island == null) return;
         IslandLevels ld = levelsCache.computeIfAbsent(island.getUniqueId(), IslandLevels::new);
         ld.setLevel(r.getLevel());
-        ld.setUwCount(Maps.asMap(r.getUwCount().elementSet(), elem -> r.getUwCount().count(elem)));
-        ld.setMdCount(Maps.asMap(r.getMdCount().elementSet(), elem -> r.getMdCount().count(elem)));
+        ld.setUwCount(r.getUwHistogram().toMap());
+        ld.setMdCount(r.getMdHistogram().toMap());
         ld.setPointsToNextLevel(r.getPointsToNextLevel());
         levelsCache.put(island.getUniqueId(), ld);
         handler.saveObjectAsync(ld);
@@ -426,6 +473,22 @@ public class LevelsManager {
         addToTopTen(world, owner, ld.getLevel());
     }
 
+    /**
+     * Set the island level and points to next level from tracked block changes
+     * @param island - island
+     * @param lv - level
+     * @param pointsToNextLevel - points to next level
+     */
+    public void setLiveLevel(@NonNull Island island, long lv, long pointsToNextLevel) {
+        if (island.getOwner() == null) return;
+        IslandLevels ld = getLevelsData(island);
+        ld.setLevel(lv);
+        ld.setPointsToNextLevel(pointsToNextLevel);
+        handler.saveObjectAsync(ld);
+        // Update TopTen
+        addToTopTen(island.getWorld(), island.getOwner(), lv);
+    }
+
     /**
      * Removes island from cache when it is deleted
      * @param uniqueId - id of island
@@ -433,6 +496,12 @@ public class LevelsManager {
     public void deleteIsland(String uniqueId) {
         levelsCache.remove(uniqueId);
         handler.deleteID(uniqueId);
+        if (addon.getLevelTracker() != null) {
+            addon.getLevelTracker().remove(uniqueId);
+        }
+        if (addon.getChunkCache() != null) {
+            addon.getChunkCache().remove(uniqueId);
+        }
     }
 
 }
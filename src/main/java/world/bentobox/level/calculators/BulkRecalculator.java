@@ -0,0 +1,241 @@
+package world.bentobox.level.calculators;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.TreeSet;
+
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.scheduler.BukkitTask;
+
+import world.bentobox.bentobox.database.Database;
+import world.bentobox.bentobox.database.objects.Island;
+import world.bentobox.bentobox.util.Util;
+import world.bentobox.level.Level;
+import world.bentobox.level.calculators.Pipeliner.Priority;
+import world.bentobox.level.objects.RecalcJobData;
+
+/**
+ * Recalculates every owned island in a world, for example after the block values have changed.
+ * Islands are fed to the {@link Pipeliner} at a set rate with a set number in flight, at bulk priority so players
+ * asking for their level go first. Progress is saved so a job carries on where it stopped after a restart.
+ * Must only be used on the main thread.
+ * @author tastybento
+ *
+ */
+public class BulkRecalculator {
+
+    private static final long TICKS = 20L;
+    private static final long SAVE_INTERVAL = 30000L;
+
+    private final Level addon;
+    private final Database<RecalcJobData> handler;
+    private final Map<World, Job> jobs = new HashMap<>();
+    private final BukkitTask task;
+    private volatile boolean stopped;
+
+    /**
+     * A running recalculation of one world
+     */
+    private class Job {
+        private final World world;
+        private final RecalcJobData data;
+        // Islands still to start, in unique id order
+        private final Queue<String> toDo;
+        private final TreeSet<String> inFlight = new TreeSet<>();
+        // Islands done since the last save, so those after the checkpoint are not counted as done on resume
+        private final TreeSet<String> finished = new TreeSet<>();
+        private final long startTime = System.currentTimeMillis();
+        private final int doneAtStart;
+        // Islands that can be started, built up over time by the rate
+        private double credit;
+        private long lastSave;
+
+        Job(World world, RecalcJobData data, Queue<String> toDo) {
+            this.world = world;
+            this.data = data;
+            this.toDo = toDo;
+            this.doneAtStart = data.getDone();
+        }
+
+        /**
+         * Start as many islands as the rate and the concurrency allow
+         */
+        private void tick() {
+            int rate = addon.getSettings().getBulkRecalcRate();
+            // Do not build up credit while waiting for islands in flight
+            credit = Math.min(credit + rate * TICKS / 1200D, Math.max(1D, rate / 60D));
+            while (credit >= 1 && inFlight.size() < addon.getSettings().getBulkRecalcConcurrency() && !toDo.isEmpty()) {
+                credit--;
+                start(toDo.poll());
+            }
+            if (toDo.isEmpty() && inFlight.isEmpty()) {
+                finish(this);
+            } else if (System.currentTimeMillis() - lastSave > SAVE_INTERVAL) {
+                save();
+            }
+        }
+
+        private void start(String id) {
+            Island island = addon.getIslands().getIslandById(id).orElse(null);
+            if (island == null || island.isDeleted() || island.getOwner() == null) {
+                // Nothing to do
+                finished.add(id);
+                data.setDone(data.getDone() + 1);
+                return;
+            }
+            inFlight.add(id);
+            addon.getManager().calculateLevel(island.getOwner(), island, Priority.BULK).whenComplete((r, ex) -> {
+                // Calculations are cancelled when the addon is disabled, and then no tasks can be scheduled
+                if (!stopped) {
+                    Bukkit.getScheduler().runTask(addon.getPlugin(), () -> {
+                        if (inFlight.remove(id)) {
+                            finished.add(id);
+                            data.setDone(data.getDone() + 1);
+                        }
+                    });
+                }
+            });
+        }
+
+        /**
+         * Save where the job is. Islands in flight, and islands after them that are already done,
+         * are done again after a restart, so they are not counted as done.
+         */
+        private void save() {
+            lastSave = System.currentTimeMillis();
+            String next = inFlight.isEmpty() ? toDo.peek() : inFlight.first();
+            if (next == null) {
+                finished.clear();
+                data.setDoneBefore(data.getDone());
+            } else {
+                // Islands before the checkpoint will not be seen again
+                finished.headSet(next).clear();
+                data.setDoneBefore(data.getDone() - finished.size());
+            }
+            data.setResumeFrom(Objects.requireNonNullElse(next, ""));
+            handler.saveObjectAsync(data);
+        }
+
+        /**
+         * @return estimated seconds until the job is done
+         */
+        private long getEta() {
+            int remaining = data.getTotal() - data.getDone();
+            int doneNow = data.getDone() - doneAtStart;
+            long elapsed = System.currentTimeMillis() - startTime;
+            if (doneNow > 0) {
+                return (long)((double)elapsed / doneNow * remaining / 1000);
+            }
+            // Nothing done yet, so go by the rate
+            return remaining * 60L / addon.getSettings().getBulkRecalcRate();
+        }
+    }
+
+    /**
+     * Progress of a job
+     * @param world - world being recalculated
+     * @param done - islands done
+     * @param total - islands in the job
+     * @param eta - estimated seconds left
+     */
+    public record Progress(World world, int done, int total, long eta) {}
+
+    /**
+     * @param addon - Level addon
+     */
+    public BulkRecalculator(Level addon) {
+        this.addon = addon;
+        this.handler = new Database<>(addon, RecalcJobData.class);
+        task = Bukkit.getScheduler().runTaskTimer(addon.getPlugin(), () -> jobs.values().stream().toList().forEach(Job::tick), TICKS, TICKS);
+    }
+
+    /**
+     * Carry on with any jobs that were running when the server stopped. Islands must be loaded.
+     */
+    public void resume() {
+        handler.loadObjects().forEach(data -> {
+            World world = Bukkit.getWorld(data.getUniqueId());
+            if (world == null || !addon.getPlugin().getIWM().inWorld(world)) {
+                addon.logError("Cannot resume level recalculation of unknown world " + data.getUniqueId());
+                handler.deleteID(data.getUniqueId());
+                return;
+            }
+            addon.log("Resuming level recalculation of " + world.getName() + " at island " + (data.getDoneBefore() + 1) + " of " + data.getTotal());
+            startJob(world, data);
+        });
+    }
+
+    /**
+     * Start recalculating all the islands in a world
+     * @param world - game mode world
+     * @return number of islands that will be recalculated, or -1 if a job for this world is already running
+     */
+    public int start(World world) {
+        World w = Objects.requireNonNull(Util.getWorld(world));
+        if (jobs.containsKey(w)) {
+            return -1;
+        }
+        Job job = startJob(w, new RecalcJobData(w.getName()));
+        job.save();
+        return job.toDo.size();
+    }
+
+    private Job startJob(World world, RecalcJobData data) {
+        String from = data.getResumeFrom() == null ? "" : data.getResumeFrom();
+        Queue<String> toDo = new ArrayDeque<>(addon.getIslands().getIslands(world).stream()
+                .filter(i -> !i.isDeleted() && i.getOwner() != null)
+                .map(Island::getUniqueId).filter(id -> id.compareTo(from) >= 0).sorted().toList());
+        // Islands after the checkpoint that were done before the restart are done again
+        data.setDone(data.getDoneBefore());
+        // Islands may have been made or deleted since the job was saved
+        data.setTotal(data.getDone() + toDo.size());
+        Job job = new Job(world, data, toDo);
+        jobs.put(world, job);
+        return job;
+    }
+
+    private void finish(Job job) {
+        jobs.remove(job.world);
+        handler.deleteID(job.data.getUniqueId());
+        addon.log("Level recalculation of " + job.world.getName() + " finished. " + job.data.getDone() + " islands done in "
+                + (System.currentTimeMillis() - job.startTime) / 1000 + "s.");
+    }
+
+    /**
+     * Stop recalculating a world. Islands in flight are still calculated.
+     * @param world - game mode world
+     * @return true if a job was stopped
+     */
+    public boolean cancel(World world) {
+        Job job = jobs.remove(Util.getWorld(world));
+        if (job == null) {
+            return false;
+        }
+        handler.deleteID(job.data.getUniqueId());
+        return true;
+    }
+
+    /**
+     * Get the progress of the job for a world
+     * @param world - game mode world
+     * @return progress or null if there is no job running for the world
+     */
+    public Progress getProgress(World world) {
+        Job job = jobs.get(Util.getWorld(world));
+        return job == null ? null : new Progress(job.world, job.data.getDone(), job.data.getTotal(), job.getEta());
+    }
+
+    /**
+     * Save the jobs so they carry on after a restart, and stop
+     */
+    public void stop() {
+        stopped = true;
+        task.cancel();
+        jobs.values().forEach(Job::save);
+        jobs.clear();
+    }
+}
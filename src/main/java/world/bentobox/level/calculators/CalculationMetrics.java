@@ -0,0 +1,363 @@
+package world.bentobox.level.calculators;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+
+import world.bentobox.level.Level;
+
+/**
+ * Statistics about level calculations, for sizing the settings and spotting slow downs.
+ * Times and rates are kept in histograms so percentiles can be worked out. Everything can be recorded from any thread.
+ * If enabled, the statistics are written to a file in the Prometheus text format now and again.
+ * @author tastybento
+ *
+ */
+public class CalculationMetrics {
+
+    private static final String PREFIX = "level_";
+    private static final String FILE_NAME = "metrics.prom";
+    // Bucket upper bounds for times, in seconds
+    private static final double[] TIME_BOUNDS = {0.00005, 0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05,
+            0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60, 120, 300};
+    // Bucket upper bounds for rates, per second
+    private static final double[] RATE_BOUNDS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 20000, 50000,
+            100000, 200000, 500000, 1000000, 2000000, 5000000, 10000000};
+
+    /**
+     * Distribution of a value in fixed buckets
+     */
+    public static class Histogram {
+        private final String name;
+        private final String help;
+        private final double[] bounds;
+        // One more than the bounds for values above the highest bound
+        private final AtomicLongArray buckets;
+        private final AtomicLong count = new AtomicLong();
+        // Sum is kept as raw double bits
+        private final AtomicLong sum = new AtomicLong(Double.doubleToLongBits(0));
+
+        Histogram(String name, String help, double[] bounds) {
+            this.name = name;
+            this.help = help;
+            this.bounds = bounds;
+            this.buckets = new AtomicLongArray(bounds.length + 1);
+        }
+
+        /**
+         * Record a value
+         * @param value - value
+         */
+        public void record(double value) {
+            int i = 0;
+            while (i < bounds.length && value > bounds[i]) {
+                i++;
+            }
+            buckets.incrementAndGet(i);
+            count.incrementAndGet();
+            sum.accumulateAndGet(Double.doubleToLongBits(value), (a, b) -> Double.doubleToLongBits(Double.longBitsToDouble(a) + Double.longBitsToDouble(b)));
+        }
+
+        /**
+         * Record a time
+         * @param startNanos - start time from {@link System#nanoTime()}
+         */
+        public void recordSince(long startNanos) {
+            record((System.nanoTime() - startNanos) / 1e9);
+        }
+
+        /**
+         * @return the name of the statistic
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return how many values have been recorded
+         */
+        public long getCount() {
+            return count.get();
+        }
+
+        /**
+         * @return the sum of all the values
+         */
+        public double getSum() {
+            return Double.longBitsToDouble(sum.get());
+        }
+
+        /**
+         * Estimate a percentile. Values are assumed to be spread evenly within a bucket.
+         * @param p - percentile, 0 to 100
+         * @return estimated value, or 0 if nothing has been recorded
+         */
+        public double getPercentile(double p) {
+            long total = count.get();
+            if (total == 0) {
+                return 0;
+            }
+            double rank = p / 100 * total;
+            long seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                long inBucket = buckets.get(i);
+                if (inBucket > 0 && seen + inBucket >= rank) {
+                    double low = i == 0 ? 0 : bounds[i - 1];
+                    if (i == bounds.length) {
+                        // Above the top bucket
+                        return low;
+                    }
+                    return low + (bounds[i] - low) * Math.max(0, rank - seen) / inBucket;
+                }
+                seen += inBucket;
+            }
+            return bounds[bounds.length - 1];
+        }
+
+        private void write(StringBuilder out) {
+            String full = PREFIX + name;
+            out.append("# HELP ").append(full).append(' ').append(help).append('\n');
+            out.append("# TYPE ").append(full).append(" histogram\n");
+            long cumulative = 0;
+            for (int i = 0; i < bounds.length; i++) {
+                cumulative += buckets.get(i);
+                out.append(full).append("_bucket{le=\"").append(format(bounds[i])).append("\"} ").append(cumulative).append('\n');
+            }
+            cumulative += buckets.get(bounds.length);
+            out.append(full).append("_bucket{le=\"+Inf\"} ").append(cumulative).append('\n');
+            out.append(full).append("_sum ").append(format(getSum())).append('\n');
+            out.append(full).append("_count ").append(cumulative).append('\n');
+        }
+    }
+
+    private final Level addon;
+    private final List<Histogram> histograms = new ArrayList<>();
+    private final BukkitTask task;
+
+    private final Histogram queueWait = histogram("queue_wait_seconds", "Time islands wait in the queue before they are calculated", TIME_BOUNDS);
+    private final Histogram duration = histogram("calculation_seconds", "Time from the start of a calculation to its results", TIME_BOUNDS);
+    private final Histogram chunkLoad = histogram("chunk_load_seconds", "Time to load a chunk", TIME_BOUNDS);
+    private final Histogram snapshot = histogram("snapshot_seconds", "Main thread time to snapshot a chunk", TIME_BOUNDS);
+    private final Histogram chests = histogram("chests_seconds", "Main thread time to copy the containers of a chunk", TIME_BOUNDS);
+    private final Histogram scan = histogram("scan_seconds", "Time to scan a chunk snapshot", TIME_BOUNDS);
+    private final Histogram stackers = histogram("stackers_seconds", "Time to look up the stacked blocks of an island", TIME_BOUNDS);
+    private final Histogram tidyUp = histogram("tidy_up_seconds", "Main thread time to work out the level from the counts", TIME_BOUNDS);
+    private final Histogram save = histogram("save_seconds", "Main thread time to store the results", TIME_BOUNDS);
+    private final Histogram chunkRate = histogram("chunks_per_second", "Chunks scanned per second by each calculation", RATE_BOUNDS);
+    private final Histogram blockRate = histogram("blocks_per_second", "Blocks counted per second by each calculation", RATE_BOUNDS);
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong chunksScanned = new AtomicLong();
+
+    /**
+     * @param addon - Level addon
+     */
+    public CalculationMetrics(Level addon) {
+        this.addon = addon;
+        long interval = addon.getSettings().getMetricsDumpInterval() * 1200L;
+        task = interval > 0 ? Bukkit.getScheduler().runTaskTimerAsynchronously(addon.getPlugin(), this::dump, interval, interval) : null;
+    }
+
+    private Histogram histogram(String name, String help, double[] bounds) {
+        Histogram h = new Histogram(name, help, bounds);
+        histograms.add(h);
+        return h;
+    }
+
+    /**
+     * @return all the histograms
+     */
+    public List<Histogram> getHistograms() {
+        return Collections.unmodifiableList(histograms);
+    }
+
+    /**
+     * @return time islands wait in the queue, in seconds
+     */
+    public Histogram getQueueWait() {
+        return queueWait;
+    }
+
+    /**
+     * @return time from the start of a calculation to its results, in seconds
+     */
+    public Histogram getDuration() {
+        return duration;
+    }
+
+    /**
+     * @return time to load a chunk, in seconds
+     */
+    public Histogram getChunkLoad() {
+        return chunkLoad;
+    }
+
+    /**
+     * @return time to snapshot a chunk, in seconds
+     */
+    public Histogram getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * @return time to copy the containers of a chunk, in seconds
+     */
+    public Histogram getChests() {
+        return chests;
+    }
+
+    /**
+     * @return time to scan a chunk snapshot, in seconds
+     */
+    public Histogram getScan() {
+        return scan;
+    }
+
+    /**
+     * @return time to look up the stacked blocks of an island, in seconds
+     */
+    public Histogram getStackers() {
+        return stackers;
+    }
+
+    /**
+     * @return time to work out the level from the counts, in seconds
+     */
+    public Histogram getTidyUp() {
+        return tidyUp;
+    }
+
+    /**
+     * @return time to store the results, in seconds
+     */
+    public Histogram getSave() {
+        return save;
+    }
+
+    /**
+     * Record the throughput of a calculation that has finished
+     * @param chunks - chunks scanned
+     * @param blocks - blocks counted
+     * @param seconds - how long the calculation took
+     */
+    public void recordThroughput(long chunks, long blocks, double seconds) {
+        if (seconds > 0) {
+            chunkRate.record(chunks / seconds);
+            blockRate.record(blocks / seconds);
+        }
+    }
+
+    /**
+     * Count how a calculation ended
+     * @param state - state of the results
+     */
+    public void recordResult(Results.Result state) {
+        switch (state) {
+        case TIMEOUT -> timeouts.incrementAndGet();
+        case CANCELLED -> cancelled.incrementAndGet();
+        case ERROR -> errors.incrementAndGet();
+        default -> completed.incrementAndGet();
+        }
+    }
+
+    /**
+     * Count a chunk that has been scanned
+     */
+    public void chunkScanned() {
+        chunksScanned.incrementAndGet();
+    }
+
+    /**
+     * @return number of calculations that completed
+     */
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    /**
+     * @return number of calculations that timed out
+     */
+    public long getTimeouts() {
+        return timeouts.get();
+    }
+
+    /**
+     * @return number of calculations that were cancelled
+     */
+    public long getCancelled() {
+        return cancelled.get();
+    }
+
+    /**
+     * @return number of calculations that failed with an error
+     */
+    public long getErrors() {
+        return errors.get();
+    }
+
+    /**
+     * @return all the statistics in the Prometheus text format
+     */
+    public String toPrometheus() {
+        StringBuilder out = new StringBuilder();
+        counter(out, "completed_total", "Calculations that completed", completed.get());
+        counter(out, "timeouts_total", "Calculations that timed out", timeouts.get());
+        counter(out, "cancelled_total", "Calculations that were cancelled", cancelled.get());
+        counter(out, "errors_total", "Calculations that failed with an error", errors.get());
+        counter(out, "chunks_scanned_total", "Chunks scanned", chunksScanned.get());
+        out.append("# HELP ").append(PREFIX).append("queue_size Islands queued or being calculated\n");
+        out.append("# TYPE ").append(PREFIX).append("queue_size gauge\n");
+        out.append(PREFIX).append("queue_size ").append(addon.getPipeliner().getIslandsInQueue()).append('\n');
+        histograms.forEach(h -> h.write(out));
+        return out.toString();
+    }
+
+    private void counter(StringBuilder out, String name, String help, long value) {
+        out.append("# HELP ").append(PREFIX).append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(PREFIX).append(name).append(" counter\n");
+        out.append(PREFIX).append(name).append(' ').append(value).append('\n');
+    }
+
+    private static String format(double d) {
+        return String.format(Locale.ROOT, "%.6g", d);
+    }
+
+    /**
+     * Write the statistics to a file in the addon's data folder
+     */
+    private void dump() {
+        File file = new File(addon.getDataFolder(), FILE_NAME);
+        File tmp = new File(addon.getDataFolder(), FILE_NAME + ".tmp");
+        try {
+            try (Writer w = Files.newBufferedWriter(tmp.toPath(), StandardCharsets.UTF_8)) {
+                w.write(toPrometheus());
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            addon.logError("Could not write " + file.getAbsolutePath() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stop writing the statistics
+     */
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package world.bentobox.level.calculators;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.World.Environment;
+import org.bukkit.block.Block;
+import org.bukkit.scheduler.BukkitTask;
+
+import world.bentobox.bentobox.database.objects.Island;
+import world.bentobox.bentobox.util.Util;
+import world.bentobox.level.Level;
+
+/**
+ * Keeps the scan tally of every chunk of recently calculated islands, so that calculating an island again
+ * only needs to load and scan the chunks that have changed since.
+ * A chunk is dropped from the cache when a block in it changes on the island, and entries expire after
+ * a set time so that changes that fire no events are picked up eventually.
+ * If enabled, the tallies are also kept in a {@link ChunkTallyStore} so they survive a restart.
+ * Block changes do not write the store straight away. The island is marked and written once a minute,
+ * or when it is next calculated, so a busy island is not written once per block.
+ * Chunks with containers are not cached if chests are counted, because their contents change without any block changing.
+ * WildStacker stacks are not cached either. They are looked up again on every calculation.
+ * @author tastybento
+ *
+ */
+public class ChunkTallyCache {
+
+    // The protection range is part of the key because it decides which blocks in edge chunks are counted
+    record ChunkKey(Environment env, int x, int z, int range) {}
+
+    /**
+     * A cached tally. The entry is put in the cache when the chunk snapshot is taken and the tally is filled in
+     * when the scan is done. If the chunk changes in between, the entry is removed and the scan is not cached.
+     */
+    static class Entry {
+        // When the entry was made, for expiry
+        private final long time = System.currentTimeMillis();
+        // When the chunk was snapshotted
+        private final long snapshotTime;
+        private volatile ScanTally tally;
+
+        Entry() {
+            snapshotTime = time;
+        }
+
+        /**
+         * Entry for a tally read from the store
+         * @param snapshotTime - when the chunk was snapshotted
+         * @param tally - tally
+         */
+        Entry(long snapshotTime, ScanTally tally) {
+            this.snapshotTime = snapshotTime;
+            this.tally = tally;
+        }
+
+        /**
+         * Fill in the tally once the chunk has been scanned
+         * @param tally - complete tally. It must not be changed after this.
+         */
+        void complete(ScanTally tally) {
+            tally.trim();
+            this.tally = tally;
+        }
+
+        /**
+         * @return the tally, or null if the chunk is still being scanned
+         */
+        ScanTally getTally() {
+            return tally;
+        }
+
+        /**
+         * @return when the chunk was snapshotted
+         */
+        long getSnapshotTime() {
+            return snapshotTime;
+        }
+    }
+
+    private static final long PURGE_TICKS = 1200L;
+
+    private final Level addon;
+    private final Map<String, Map<ChunkKey, Entry>> islands = new ConcurrentHashMap<>();
+    // Islands that have lost cached chunks since they were last written to the store
+    private final Map<String, Island> dirty = new ConcurrentHashMap<>();
+    private final BukkitTask task;
+    private final ChunkTallyStore store;
+
+    /**
+     * @param addon - Level addon
+     */
+    public ChunkTallyCache(Level addon) {
+        this.addon = addon;
+        this.store = addon.getSettings().isChunkCacheStore() ? new ChunkTallyStore(addon) : null;
+        task = Bukkit.getScheduler().runTaskTimerAsynchronously(addon.getPlugin(), this::purge, PURGE_TICKS, PURGE_TICKS);
+    }
+
+    private boolean isExpired(Entry e, long now) {
+        return now - e.time > addon.getSettings().getChunkCacheExpiry() * 60000L;
+    }
+
+    /**
+     * Remove expired entries and write islands that have changed to the store
+     */
+    private void purge() {
+        long now = System.currentTimeMillis();
+        islands.values().forEach(chunks -> chunks.values().removeIf(e -> isExpired(e, now)));
+        islands.values().removeIf(Map::isEmpty);
+        flush();
+    }
+
+    /**
+     * Write every island that has changed since it was last written to the store. Runs on the calling thread.
+     */
+    private void flush() {
+        for (Island island : dirty.values()) {
+            if (dirty.remove(island.getUniqueId()) != null && store != null) {
+                Map<ChunkKey, Entry> chunks = islands.get(island.getUniqueId());
+                if (chunks == null) {
+                    // Every chunk has changed or expired
+                    store.delete(island.getUniqueId());
+                } else {
+                    store.save(island.getUniqueId(), chunks, addon.getPlugin().getIWM().getSeaHeight(island.getWorld()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the cached tally for a chunk of an island
+     * @param island - island
+     * @param world - world of the chunk
+     * @param x - chunk x
+     * @param z - chunk z
+     * @return tally or null if there is none or it has expired
+     */
+    ScanTally get(Island island, World world, int x, int z) {
+        Map<ChunkKey, Entry> chunks = islands.get(island.getUniqueId());
+        if (chunks == null) {
+            return null;
+        }
+        Entry e = chunks.get(new ChunkKey(world.getEnvironment(), x, z, island.getProtectionRange()));
+        if (e == null || e.tally == null || isExpired(e, System.currentTimeMillis())) {
+            return null;
+        }
+        return e.tally;
+    }
+
+    /**
+     * Make an entry for a chunk that is about to be scanned. Must be called on the main thread when the chunk is snapshotted.
+     * @param island - island
+     * @param world - world of the chunk
+     * @param x - chunk x
+     * @param z - chunk z
+     * @return entry to complete when the scan is done
+     */
+    Entry reserve(Island island, World world, int x, int z) {
+        Entry e = new Entry();
+        islands.computeIfAbsent(island.getUniqueId(), k -> new ConcurrentHashMap<>())
+        .put(new ChunkKey(world.getEnvironment(), x, z, island.getProtectionRange()), e);
+        return e;
+    }
+
+    /**
+     * Drop the cached tally of the chunk that a block is in
+     * @param block - block that has changed
+     */
+    public void blockChanged(Block block) {
+        if (islands.isEmpty()) {
+            return;
+        }
+        addon.getIslands().getProtectedIslandAt(block.getLocation()).ifPresent(i -> {
+            Map<ChunkKey, Entry> chunks = islands.get(i.getUniqueId());
+            if (chunks != null && chunks.remove(new ChunkKey(block.getWorld().getEnvironment(), block.getX() >> 4, block.getZ() >> 4, i.getProtectionRange())) != null) {
+                // Take it out of the store too, later
+                if (store != null) {
+                    dirty.put(i.getUniqueId(), i);
+                }
+            }
+        });
+    }
+
+    /**
+     * Read the stored tallies of an island into the cache, if they are not already there
+     * @param island - island
+     * @return future that completes on the main thread when the tallies can be used
+     */
+    public CompletableFuture<Void> load(Island island) {
+        if (store == null || islands.containsKey(island.getUniqueId())) {
+            return CompletableFuture.completedFuture(null);
+        }
+        Map<Environment, World> worlds = new EnumMap<>(Environment.class);
+        worlds.put(Environment.NORMAL, Util.getWorld(island.getWorld()));
+        if (addon.getSettings().isNether()) {
+            World nether = addon.getPlugin().getIWM().getNetherWorld(island.getWorld());
+            if (nether != null) {
+                worlds.put(Environment.NETHER, nether);
+            }
+        }
+        if (addon.getSettings().isEnd()) {
+            World end = addon.getPlugin().getIWM().getEndWorld(island.getWorld());
+            if (end != null) {
+                worlds.put(Environment.THE_END, end);
+            }
+        }
+        int seaHeight = addon.getPlugin().getIWM().getSeaHeight(island.getWorld());
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        Bukkit.getScheduler().runTaskAsynchronously(addon.getPlugin(), () -> {
+            Map<ChunkKey, Entry> chunks = store.load(island.getUniqueId(), worlds, seaHeight);
+            Bukkit.getScheduler().runTask(addon.getPlugin(), () -> {
+                // Only add the island if it has not been cached in the meantime
+                Map<ChunkKey, Entry> cached = islands.computeIfAbsent(island.getUniqueId(), k -> new ConcurrentHashMap<>());
+                chunks.forEach(cached::putIfAbsent);
+                result.complete(null);
+            });
+        });
+        return result;
+    }
+
+    /**
+     * Write the cached tallies of an island to the store
+     * @param island - island
+     */
+    public void save(Island island) {
+        dirty.remove(island.getUniqueId());
+        Map<ChunkKey, Entry> chunks = islands.get(island.getUniqueId());
+        if (store == null || chunks == null) {
+            return;
+        }
+        int seaHeight = addon.getPlugin().getIWM().getSeaHeight(island.getWorld());
+        Bukkit.getScheduler().runTaskAsynchronously(addon.getPlugin(), () -> store.save(island.getUniqueId(), chunks, seaHeight));
+    }
+
+    /**
+     * Drop all the cached tallies of an island
+     * @param islandId - island unique id
+     */
+    public void remove(String islandId) {
+        dirty.remove(islandId);
+        islands.remove(islandId);
+        if (store != null) {
+            Bukkit.getScheduler().runTaskAsynchronously(addon.getPlugin(), () -> store.delete(islandId));
+        }
+    }
+
+    /**
+     * Stop purging, write islands that have changed and drop everything
+     */
+    public void stop() {
+        task.cancel();
+        flush();
+        islands.clear();
+    }
+}
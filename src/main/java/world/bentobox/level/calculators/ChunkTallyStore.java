@@ -0,0 +1,254 @@
+package world.bentobox.level.calculators;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.World.Environment;
+
+import world.bentobox.level.Level;
+import world.bentobox.level.calculators.ChunkTallyCache.ChunkKey;
+import world.bentobox.level.calculators.ChunkTallyCache.Entry;
+
+/**
+ * Saves the cached chunk tallies of each island to a file in the addon's data folder so they can be used after a restart.
+ * A stored tally is only used if the chunk's region file has not been written since the chunk was scanned,
+ * and if the block values, settings and server version are the same as when it was saved.
+ * Tallies that refer to stacked blocks are not stored.
+ * Files are read and written off the main thread.
+ * @author tastybento
+ *
+ */
+class ChunkTallyStore {
+
+    private static final int VERSION = 1;
+    private static final String FOLDER = "chunks";
+    private static final Environment[] ENVIRONMENTS = Environment.values();
+
+    private final Level addon;
+    private final File folder;
+    // Saves and deletes of the same island run one at a time, so they do not write the same temporary file at once
+    private final Object[] locks = new Object[16];
+    // Tallies saved by this server run are never read back from disk. Unsaved changes in loaded chunks would not show in the region file yet.
+    private final long startTime = System.currentTimeMillis();
+    private long fingerprint;
+
+    /**
+     * @param addon - Level addon
+     */
+    ChunkTallyStore(Level addon) {
+        this.addon = addon;
+        this.folder = new File(addon.getDataFolder(), FOLDER);
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * @param islandId - island unique id
+     * @return lock for writing the island's file
+     */
+    private Object getLock(String islandId) {
+        return locks[Math.floorMod(islandId.hashCode(), locks.length)];
+    }
+
+    /**
+     * @return a number that changes if anything that changes how blocks are counted changes
+     */
+    private long getFingerprint() {
+        if (fingerprint == 0) {
+            CRC32 crc = new CRC32();
+            try {
+                crc.update(Files.readAllBytes(new File(addon.getDataFolder(), "blockconfig.yml").toPath()));
+            } catch (IOException e) {
+                // Nothing can be trusted
+                crc.update(Long.toString(startTime).getBytes());
+            }
+            crc.update((VERSION + Bukkit.getBukkitVersion() + addon.getSettings().isUseHeightMap() + addon.getSettings().isSkipEmptySections()
+                    + addon.getSettings().isIncludeChests() + addon.isStackersEnabled() + addon.isRoseStackersEnabled()).getBytes());
+            fingerprint = crc.getValue() + 1;
+        }
+        return fingerprint;
+    }
+
+    private File getFile(String islandId) {
+        return new File(folder, islandId + ".bin");
+    }
+
+    /**
+     * Get the region file that a chunk is saved in
+     * @param world - world
+     * @param x - chunk x
+     * @param z - chunk z
+     * @return region file
+     */
+    private File getRegionFile(World world, int x, int z) {
+        String dim = switch (world.getEnvironment()) {
+        case NETHER -> "DIM-1" + File.separator;
+        case THE_END -> "DIM1" + File.separator;
+        default -> "";
+        };
+        return new File(world.getWorldFolder(), dim + "region" + File.separator + "r." + (x >> 5) + "." + (z >> 5) + ".mca");
+    }
+
+    /**
+     * Read the stored tallies of an island. Must not be called on the main thread.
+     * @param islandId - island unique id
+     * @param worlds - island worlds by environment
+     * @param seaHeight - sea height of the island's world
+     * @return tallies that can still be used, may be empty
+     */
+    Map<ChunkKey, Entry> load(String islandId, Map<Environment, World> worlds, int seaHeight) {
+        Map<ChunkKey, Entry> result = new HashMap<>();
+        File file = getFile(islandId);
+        if (!file.exists()) {
+            return result;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file.toPath()))))) {
+            if (in.readInt() != VERSION || in.readLong() != getFingerprint() || in.readInt() != seaHeight) {
+                return result;
+            }
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                Environment env = ENVIRONMENTS[in.readByte()];
+                ChunkKey key = new ChunkKey(env, in.readInt(), in.readInt(), in.readInt());
+                long time = in.readLong();
+                World world = worlds.get(env);
+                ScanTally tally = readTally(in, world);
+                // The chunk must not have been saved since it was scanned
+                if (world != null && time < startTime && getRegionFile(world, key.x(), key.z()).lastModified() < time) {
+                    tally.trim();
+                    result.put(key, new Entry(time, tally));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            addon.logError("Could not read stored chunk counts for island " + islandId + ": " + e.getMessage());
+            result.clear();
+        }
+        return result;
+    }
+
+    private ScanTally readTally(DataInputStream in, World world) throws IOException {
+        ScanTally tally = new ScanTally(world == null ? null : addon.getBlockConfig().getTable(world));
+        readHistogram(in, tally.mdCount);
+        readHistogram(in, tally.uwCount);
+        readHistogram(in, tally.ncCount);
+        tally.rawBlockCount = in.readLong();
+        tally.underWaterBlockCount = in.readLong();
+        tally.limitedSize = in.readInt();
+        tally.limited = new int[tally.limitedSize];
+        for (int i = 0; i < tally.limitedSize; i++) {
+            tally.limited[i] = in.readInt();
+        }
+        return tally;
+    }
+
+    private void readHistogram(DataInputStream in, MaterialHistogram h) throws IOException {
+        int distinct = in.readInt();
+        for (int i = 0; i < distinct; i++) {
+            h.add(in.readInt(), in.readInt());
+        }
+    }
+
+    /**
+     * Write the tallies of an island. Must not be called on the main thread.
+     * @param islandId - island unique id
+     * @param chunks - cached tallies
+     * @param seaHeight - sea height of the island's world
+     */
+    void save(String islandId, Map<ChunkKey, Entry> chunks, int seaHeight) {
+        synchronized (getLock(islandId)) {
+            File file = getFile(islandId);
+            Map<ChunkKey, Entry> tallies = new HashMap<>();
+            chunks.forEach((key, e) -> {
+                ScanTally tally = e.getTally();
+                if (tally != null && tally.stackedBlocks.isEmpty()) {
+                    tallies.put(key, e);
+                }
+            });
+            if (tallies.isEmpty()) {
+                delete(islandId);
+                return;
+            }
+            if (!folder.exists() && !folder.mkdirs()) {
+                addon.logError("Could not make folder " + folder.getAbsolutePath());
+                return;
+            }
+            File tmp = new File(folder, islandId + ".tmp");
+            try {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(tmp.toPath()))))) {
+                    out.writeInt(VERSION);
+                    out.writeLong(getFingerprint());
+                    out.writeInt(seaHeight);
+                    out.writeInt(tallies.size());
+                    for (Map.Entry<ChunkKey, Entry> en : tallies.entrySet()) {
+                        ChunkKey key = en.getKey();
+                        out.writeByte(key.env().ordinal());
+                        out.writeInt(key.x());
+                        out.writeInt(key.z());
+                        out.writeInt(key.range());
+                        out.writeLong(en.getValue().getSnapshotTime());
+                        writeTally(out, en.getValue().getTally());
+                    }
+                }
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                addon.logError("Could not save chunk counts for island " + islandId + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void writeTally(DataOutputStream out, ScanTally tally) throws IOException {
+        writeHistogram(out, tally.mdCount);
+        writeHistogram(out, tally.uwCount);
+        writeHistogram(out, tally.ncCount);
+        out.writeLong(tally.rawBlockCount);
+        out.writeLong(tally.underWaterBlockCount);
+        out.writeInt(tally.limitedSize);
+        for (int i = 0; i < tally.limitedSize; i++) {
+            out.writeInt(tally.limited[i]);
+        }
+    }
+
+    private void writeHistogram(DataOutputStream out, MaterialHistogram h) throws IOException {
+        out.writeInt(h.distinct());
+        IOException[] error = new IOException[1];
+        h.forEach((material, count) -> {
+            try {
+                out.writeInt(material.ordinal());
+                out.writeInt(count);
+            } catch (IOException e) {
+                error[0] = e;
+            }
+        });
+        if (error[0] != null) {
+            throw error[0];
+        }
+    }
+
+    /**
+     * Delete the stored tallies of an island
+     * @param islandId - island unique id
+     */
+    void delete(String islandId) {
+        synchronized (getLock(islandId)) {
+            try {
+                Files.deleteIfExists(getFile(islandId).toPath());
+            } catch (IOException e) {
+                addon.logError("Could not delete chunk counts for island " + islandId + ": " + e.getMessage());
+            }
+        }
+    }
+}
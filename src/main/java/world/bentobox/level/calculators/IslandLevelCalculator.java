@@ -1,27 +1,26 @@
 package world.bentobox.level.calculators;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumMap;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Queue;
-import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 import org.bukkit.Bukkit;
 import org.bukkit.Chunk;
 import org.bukkit.ChunkSnapshot;
 import org.bukkit.Location;
 import org.bukkit.Material;
-import org.bukkit.Tag;
 import org.bukkit.World;
 import org.bukkit.World.Environment;
 import org.bukkit.block.Block;
@@ -31,147 +30,43 @@ import org.bukkit.block.CreatureSpawner;
 import org.bukkit.block.data.BlockData;
 import org.bukkit.block.data.type.Slab;
 import org.bukkit.inventory.ItemStack;
-import org.bukkit.scheduler.BukkitTask;
 
 import com.bgsoftware.wildstacker.api.WildStackerAPI;
 import com.bgsoftware.wildstacker.api.objects.StackedBarrel;
-import com.google.common.collect.Multiset;
-import com.google.common.collect.Multiset.Entry;
-import com.google.common.collect.Multisets;
 
 import dev.rosewood.rosestacker.api.RoseStackerAPI;
 import us.lynuxcraft.deadsilenceiv.advancedchests.AdvancedChestsAPI;
 import us.lynuxcraft.deadsilenceiv.advancedchests.chest.AdvancedChest;
 import us.lynuxcraft.deadsilenceiv.advancedchests.chest.gui.page.ChestPage;
-import world.bentobox.bentobox.BentoBox;
 import world.bentobox.bentobox.database.objects.Island;
 import world.bentobox.bentobox.util.Pair;
 import world.bentobox.bentobox.util.Util;
 import world.bentobox.level.Level;
 import world.bentobox.level.calculators.Results.Result;
+import world.bentobox.level.config.BlockTable;
 
 public class IslandLevelCalculator {
     private static final String LINE_BREAK = "==================================";
     public static final long MAX_AMOUNT = 10000;
-    private static final List<Material> CHESTS = Arrays.asList(Material.CHEST, Material.CHEST_MINECART, Material.TRAPPED_CHEST,
-            Material.SHULKER_BOX, Material.BLACK_SHULKER_BOX, Material.BLUE_SHULKER_BOX, Material.BROWN_SHULKER_BOX,
-            Material.CYAN_SHULKER_BOX, Material.GRAY_SHULKER_BOX, Material.GREEN_SHULKER_BOX, Material.LIGHT_BLUE_SHULKER_BOX,
-            Material.LIGHT_GRAY_SHULKER_BOX, Material.LIME_SHULKER_BOX, Material.MAGENTA_SHULKER_BOX, Material.ORANGE_SHULKER_BOX,
-            Material.PINK_SHULKER_BOX, Material.PURPLE_SHULKER_BOX, Material.RED_SHULKER_BOX, Material.RED_SHULKER_BOX,
-            Material.WHITE_SHULKER_BOX, Material.YELLOW_SHULKER_BOX, Material.COMPOSTER, Material.BARREL, Material.DISPENSER,
-            Material.DROPPER, Material.SMOKER, Material.BLAST_FURNACE);
-    private static final int CHUNKS_TO_SCAN = 100;
+    private static final Material[] MATERIALS = Material.values();
 
-    /**
-     * Method to evaluate a mathematical equation
-     * @param str - equation to evaluate
-     * @return value of equation
-     */
-    private static double eval(final String str) {
-        return new Object() {
-            int pos = -1, ch;
-
-            boolean eat(int charToEat) {
-                while (ch == ' ') nextChar();
-                if (ch == charToEat) {
-                    nextChar();
-                    return true;
-                }
-                return false;
-            }
-
-            void nextChar() {
-                ch = (++pos < str.length()) ? str.charAt(pos) : -1;
-            }
-
-            double parse() {
-                nextChar();
-                double x = parseExpression();
-                if (pos < str.length()) throw new RuntimeException("Unexpected: " + (char)ch);
-                return x;
-            }
-
-            // Grammar:
-            // expression = term | expression `+` term | expression `-` term
-            // term = factor | term `*` factor | term `/` factor
-            // factor = `+` factor | `-` factor | `(` expression `)`
-            //        | number | functionName factor | factor `^` factor
-
-            double parseExpression() {
-                double x = parseTerm();
-                for (;;) {
-                    if      (eat('+')) x += parseTerm(); // addition
-                    else if (eat('-')) x -= parseTerm(); // subtraction
-                    else return x;
-                }
-            }
-
-            double parseFactor() {
-                if (eat('+')) return parseFactor(); // unary plus
-                if (eat('-')) return -parseFactor(); // unary minus
-
-                double x;
-                int startPos = this.pos;
-                if (eat('(')) { // parentheses
-                    x = parseExpression();
-                    eat(')');
-                } else if ((ch >= '0' && ch <= '9') || ch == '.') { // numbers
-                    while ((ch >= '0' && ch <= '9') || ch == '.') nextChar();
-                    x = Double.parseDouble(str.substring(startPos, this.pos));
-                } else if (ch >= 'a' && ch <= 'z') { // functions
-                    while (ch >= 'a' && ch <= 'z') nextChar();
-                    String func = str.substring(startPos, this.pos);
-                    x = parseFactor();
-                    switch (func) {
-                    case "sqrt":
-                        x = Math.sqrt(x);
-                        break;
-                    case "sin":
-                        x = Math.sin(Math.toRadians(x));
-                        break;
-                    case "cos":
-                        x = Math.cos(Math.toRadians(x));
-                        break;
-                    case "tan":
-                        x = Math.tan(Math.toRadians(x));
-                        break;
-                    default:
-                        throw new RuntimeException("Unknown function: " + func);
-                    }
-                } else {
-                    throw new RuntimeException("Unexpected: " + (char)ch);
-                }
-
-                if (eat('^')) x = Math.pow(x, parseFactor()); // exponentiation
-
-                return x;
-            }
-
-            double parseTerm() {
-                double x = parseFactor();
-                for (;;) {
-                    if      (eat('*')) x *= parseFactor(); // multiplication
-                    else if (eat('/')) x /= parseFactor(); // division
-                    else return x;
-                }
-            }
-        }.parse();
-    }
     private final Level addon;
     private final Queue<Pair<Integer, Integer>> chunksToCheck;
     private final Island island;
-    private final HashMap<Material, Integer> limitCount;
+    private final int[] limitCount;
     private final CompletableFuture<Results> r;
 
 
     private final Results results;
-    private long duration;
     private final boolean zeroIsland;
     private final Map<Environment, World> worlds = new EnumMap<>(Environment.class);
+    private final Map<Environment, BlockTable> tables = new EnumMap<>(Environment.class);
     private final int seaHeight;
     private final List<Location> stackedBlocks = new ArrayList<>();
-    private final Set<Chunk> chestBlocks = new HashSet<>();
-    private BukkitTask finishTask;
+    // Set once the results have been completed, on the main thread
+    private boolean finished;
+    private volatile boolean cancelled;
+    private final AtomicLong chunksScanned = new AtomicLong();
 
 
     /**
@@ -187,9 +82,7 @@ public class IslandLevelCalculator {
         this.r = r;
         this.zeroIsland = zeroIsland;
         results = new Results();
-        duration = System.currentTimeMillis();
         chunksToCheck = getChunksToScan(island);
-        this.limitCount = new HashMap<>(addon.getBlockConfig().getBlockLimits());
         // Get the initial island level
         results.initialLevel.set(addon.getInitialIslandLevel(island));
         // Set up the worlds
@@ -208,6 +101,9 @@ public class IslandLevelCalculator {
                 worlds.put(Environment.THE_END, end);
             }
         }
+        // Block values and limits for each dimension
+        worlds.forEach((env, world) -> tables.put(env, addon.getBlockConfig().getTable(world)));
+        this.limitCount = tables.get(Environment.NORMAL).newLimitBudget();
         // Sea Height
         seaHeight = addon.getPlugin().getIWM().getSeaHeight(island.getWorld());
     }
@@ -218,25 +114,89 @@ public class IslandLevelCalculator {
      * @return level of island
      */
     private long calculateLevel(long blockAndDeathPoints) {
-        String calcString = addon.getSettings().getLevelCalc();
-        String withValues = calcString.replace("blocks", String.valueOf(blockAndDeathPoints)).replace("level_cost", String.valueOf(this.addon.getSettings().getLevelCost()));
-        return (long)eval(withValues) - (addon.getSettings().isZeroNewIslandLevels() ? results.initialLevel.get() : 0);
+        return calculateLevel(addon, blockAndDeathPoints, results.initialLevel.get());
     }
 
     /**
-     * Adds value to the results based on the material and whether the block is below sea level or not
-     * @param mat - material of the block
+     * Calculate the level based on the raw points
+     * @param addon - Level addon
+     * @param blockAndDeathPoints - raw points counted on island
+     * @param initialLevel - initial level of the island
+     * @return level of island
+     */
+    static long calculateLevel(Level addon, long blockAndDeathPoints, long initialLevel) {
+        double level = addon.getLevelFormula().evaluate(blockAndDeathPoints, addon.getSettings().getLevelCost());
+        return (long)level - (addon.getSettings().isZeroNewIslandLevels() ? initialLevel : 0);
+    }
+
+    /**
+     * Adds value to the results for a number of blocks of the same material, based on the material
+     * and whether the blocks are below sea level or not. Any limit is used up in one go, so a large stack
+     * costs the same as a single block.
+     * @param entry - block table entry for the material
+     * @param mat - material of the blocks
      * @param belowSeaLevel - true if below sea level
+     * @param amount - number of blocks
      */
-    private void checkBlock(Material mat, boolean belowSeaLevel) {
-        int count = limitCount(mat);
+    private void checkBlocks(long entry, Material mat, boolean belowSeaLevel, int amount) {
+        if (amount <= 0) {
+            return;
+        }
         if (belowSeaLevel) {
-            results.underWaterBlockCount.addAndGet(count);
-            results.uwCount.add(mat);
+            results.uwCount.add(mat, amount);
         } else {
-            results.rawBlockCount.addAndGet(count);
-            results.mdCount.add(mat);
+            results.mdCount.add(mat, amount);
         }
+        addValue(entry, mat, belowSeaLevel, amount);
+    }
+
+    /**
+     * Adds the value of a number of blocks to the results, using up any limit for the material
+     * @param entry - block table entry for the material
+     * @param mat - material of the blocks
+     * @param belowSeaLevel - true if below sea level
+     * @param amount - number of blocks
+     */
+    private void addValue(long entry, Material mat, boolean belowSeaLevel, int amount) {
+        int counted = amount;
+        if (BlockTable.hasFlag(entry, BlockTable.LIMITED)) {
+            int count = limitCount[mat.ordinal()];
+            counted = Math.max(0, Math.min(count, amount));
+            limitCount[mat.ordinal()] = count - counted;
+            results.ofCount.add(mat, amount - counted);
+        }
+        long value = 0;
+        if (counted > 0) {
+            if (BlockTable.hasFlag(entry, BlockTable.NOT_CONFIGURED)) {
+                // Not in config
+                results.ncCount.add(mat, counted);
+            } else {
+                value = (long)BlockTable.getValue(entry) * counted;
+            }
+        }
+        if (belowSeaLevel) {
+            results.underWaterBlockCount.addAndGet(value);
+        } else {
+            results.rawBlockCount.addAndGet(value);
+        }
+    }
+
+    /**
+     * Merges a scan tally into the results. Tallies must be merged in the order the chunks were scanned.
+     * @param tally - tally to merge
+     */
+    void mergeTally(ScanTally tally) {
+        results.mdCount.addAll(tally.mdCount);
+        results.uwCount.addAll(tally.uwCount);
+        results.ncCount.addAll(tally.ncCount);
+        results.rawBlockCount.addAndGet(tally.rawBlockCount);
+        results.underWaterBlockCount.addAndGet(tally.underWaterBlockCount);
+        // Limited blocks use up the limit in the order they were found
+        for (int i = 0; i < tally.limitedSize; i += 2) {
+            Material mat = MATERIALS[tally.limited[i] >>> 1];
+            addValue(tally.table.get(mat), mat, (tally.limited[i] & 1) == 1, tally.limited[i + 1]);
+        }
+        stackedBlocks.addAll(tally.stackedBlocks);
     }
 
     /**
@@ -262,6 +222,58 @@ public class IslandLevelCalculator {
         return island;
     }
 
+    /**
+     * Stop the calculation. Chunks that are being loaded or scanned are dropped and no more are loaded.
+     * The result is completed straight away with a {@link Result#CANCELLED} state.
+     */
+    public void cancel() {
+        cancelled = true;
+        chunksToCheck.clear();
+        r.complete(new Results(Result.CANCELLED));
+    }
+
+    /**
+     * Stop the calculation because it has run for longer than the calculation timeout.
+     * The result is completed straight away with a {@link Result#TIMEOUT} state.
+     */
+    public void timeOut() {
+        cancelled = true;
+        chunksToCheck.clear();
+        if (r.complete(new Results(Result.TIMEOUT))) {
+            addon.logError("Level calculation timed out after " + addon.getSettings().getCalculationTimeout() + "m for island: " + getIsland());
+            if (!isNotZeroIsland()) {
+                addon.logError("Island level was being zeroed.");
+            }
+        }
+    }
+
+    /**
+     * Stop the calculation because something went wrong.
+     * The result is completed with a {@link Result#ERROR} state so that the slot and anyone waiting are released.
+     * @param e - what went wrong
+     */
+    private void fail(Throwable e) {
+        cancelled = true;
+        chunksToCheck.clear();
+        if (r.complete(new Results(Result.ERROR))) {
+            addon.logError("Level calculation failed for island " + island.getUniqueId() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return number of chunks that have been scanned, not counting chunks that were in the cache
+     */
+    public long getChunksScanned() {
+        return chunksScanned.get();
+    }
+
+    /**
+     * @return true if the calculation has been cancelled
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
     /**
      * Get the completable result for this calculation
      * @return the r
@@ -271,60 +283,86 @@ public class IslandLevelCalculator {
     }
 
     /**
-     * Get the full analysis report
-     * @return a list of lines
+     * What the report needs that is not in the results, recorded when the calculation finishes.
+     * It does not refer to the calculator, so the chunk tallies can be let go while the results are kept.
+     * @param header - first line of the report
+     * @param owner - island owner
+     * @param previousLevel - level of the island before this calculation
+     * @param levelCalc - level formula
+     * @param levelCost - level cost
+     * @param underWaterMultiplier - underwater multiplier
+     * @param zeroNewIslandLevels - whether the initial island level is taken off
+     * @param table - block values used by the calculation
+     * @param limits - limits of the blocks that went over them
      */
-    private List<String> getReport() {
-        List<String> reportLines = new ArrayList<>();
-        // provide counts
-        reportLines.add("Level Log for island in " + addon.getPlugin().getIWM().getFriendlyName(island.getWorld()) + " at " + Util.xyz(island.getCenter().toVector()));
-        reportLines.add("Island owner UUID = " + island.getOwner());
-        reportLines.add("Total block value count = " + String.format("%,d",results.rawBlockCount.get()));
-        reportLines.add("Formula to calculate island level: " + addon.getSettings().getLevelCalc());
-        reportLines.add("Level cost = " + addon.getSettings().getLevelCost());
-        reportLines.add("Deaths handicap = " + results.deathHandicap.get());
-        if (addon.getSettings().isZeroNewIslandLevels()) {
-            reportLines.add("Initial island level = " + (0L - addon.getManager().getInitialLevel(island)));
-        }
-        reportLines.add("Previous level = " + addon.getManager().getIslandLevel(island.getWorld(), island.getOwner()));
-        reportLines.add("New level = " + results.getLevel());
-        reportLines.add(LINE_BREAK);
-        int total = 0;
-        if (!results.uwCount.isEmpty()) {
-            reportLines.add("Underwater block count (Multiplier = x" + addon.getSettings().getUnderWaterMultiplier() + ") value");
-            reportLines.add("Total number of underwater blocks = " + String.format("%,d",results.uwCount.size()));
-            reportLines.addAll(sortedReport(total, results.uwCount));
-        }
-        reportLines.add("Regular block count");
-        reportLines.add("Total number of blocks = " + String.format("%,d",results.mdCount.size()));
-        reportLines.addAll(sortedReport(total, results.mdCount));
-
-        reportLines.add("Blocks not counted because they exceeded limits: " + String.format("%,d",results.ofCount.size()));
-        Iterable<Multiset.Entry<Material>> entriesSortedByCount = results.ofCount.entrySet();
-        Iterator<Entry<Material>> it = entriesSortedByCount.iterator();
-        while (it.hasNext()) {
-            Entry<Material> type = it.next();
-            Integer limit = addon.getBlockConfig().getBlockLimits().get(type.getElement());
-            String explain = ")";
-            if (limit == null) {
-                Material generic = type.getElement();
-                limit = addon.getBlockConfig().getBlockLimits().get(generic);
-                explain = " - All types)";
+    private record ReportInfo(String header, UUID owner, long previousLevel, String levelCalc, long levelCost,
+            double underWaterMultiplier, boolean zeroNewIslandLevels, BlockTable table, Map<Material, Integer> limits) {
+
+        /**
+         * Get the full analysis report
+         * @param results - results of the calculation
+         * @return a list of lines
+         */
+        private List<String> build(Results results) {
+            List<String> reportLines = new ArrayList<>();
+            // provide counts
+            reportLines.add(header);
+            reportLines.add("Island owner UUID = " + owner);
+            reportLines.add("Total block value count = " + String.format("%,d",results.rawBlockCount.get()));
+            reportLines.add("Formula to calculate island level: " + levelCalc);
+            reportLines.add("Level cost = " + levelCost);
+            reportLines.add("Deaths handicap = " + results.deathHandicap.get());
+            if (zeroNewIslandLevels) {
+                reportLines.add("Initial island level = " + (0L - results.initialLevel.get()));
             }
-            reportLines.add(type.getElement().toString() + ": " + String.format("%,d",type.getCount()) + " blocks (max " + limit + explain);
-        }
-        reportLines.add(LINE_BREAK);
-        reportLines.add("Blocks on island that are not in config.yml");
-        reportLines.add("Total number = " + String.format("%,d",results.ncCount.size()));
-        entriesSortedByCount = results.ncCount.entrySet();
-        it = entriesSortedByCount.iterator();
-        while (it.hasNext()) {
-            Entry<Material> type = it.next();
-            reportLines.add(type.getElement().toString() + ": " + String.format("%,d",type.getCount()) + " blocks");
+            reportLines.add("Previous level = " + previousLevel);
+            reportLines.add("New level = " + results.getLevel());
+            reportLines.add(LINE_BREAK);
+            int total = 0;
+            if (!results.uwCount.isEmpty()) {
+                reportLines.add("Underwater block count (Multiplier = x" + underWaterMultiplier + ") value");
+                reportLines.add("Total number of underwater blocks = " + String.format("%,d",results.uwCount.size()));
+                reportLines.addAll(sortedReport(total, results.uwCount));
+            }
+            reportLines.add("Regular block count");
+            reportLines.add("Total number of blocks = " + String.format("%,d",results.mdCount.size()));
+            reportLines.addAll(sortedReport(total, results.mdCount));
+
+            reportLines.add("Blocks not counted because they exceeded limits: " + String.format("%,d",results.ofCount.size()));
+            results.ofCount.forEach((type, count) -> {
+                Integer limit = limits.get(type);
+                String explain = ")";
+                if (limit == null) {
+                    explain = " - All types)";
+                }
+                reportLines.add(type.toString() + ": " + String.format("%,d",count) + " blocks (max " + limit + explain);
+            });
+            reportLines.add(LINE_BREAK);
+            reportLines.add("Blocks on island that are not in config.yml");
+            reportLines.add("Total number = " + String.format("%,d",results.ncCount.size()));
+            results.ncCount.forEach((type, count) ->
+            reportLines.add(type.toString() + ": " + String.format("%,d",count) + " blocks"));
+            reportLines.add(LINE_BREAK);
+
+            return reportLines;
         }
-        reportLines.add(LINE_BREAK);
 
-        return reportLines;
+        private Collection<String> sortedReport(int total, MaterialHistogram materialCount) {
+            Collection<String> r = new ArrayList<>();
+            for (Pair<Material, Integer> en : materialCount.highestCountFirst()) {
+                Material type = en.getKey();
+
+                int value = BlockTable.getValue(table.get(type));
+
+                r.add(type.toString() + ":"
+                        + String.format("%,d", en.getValue()) + " blocks x " + value + " = " + (value * en.getValue()));
+                total += (value * en.getValue());
+
+            }
+            r.add("Subtotal = " + total);
+            r.add(LINE_BREAK);
+            return r;
+        }
     }
 
     /**
@@ -334,189 +372,304 @@ public class IslandLevelCalculator {
         return results;
     }
     /**
-     * Get value of a material
-     * World blocks trump regular block values
-     * @param md - Material to check
-     * @return value of a material
+     * Get the block table for a world
+     * @param world - world of this island
+     * @return block table for the world's dimension
      */
-    private int getValue(Material md) {
-        Integer value = addon.getBlockConfig().getValue(island.getWorld(), md);
-        if (value == null) {
-            // Not in config
-            results.ncCount.add(md);
-            return 0;
-        }
-        return value;
+    private BlockTable getTable(World world) {
+        return tables.getOrDefault(world.getEnvironment(), tables.get(Environment.NORMAL));
     }
 
     /**
-     * Get a chunk async
+     * Load and scan a batch of chunks in one dimension
      * @param env - the environment
-     * @param pairList - chunk coordinate
-     * @return a future chunk or future null if there is no chunk to load, e.g., there is no island nether
+     * @param pairList - chunk coordinates
+     * @return a future list of tallies in chunk order, with nulls for chunks that could not be loaded or were never generated.
+     * If there is no world for this environment, e.g., there is no island nether, the list is empty.
      */
-    private CompletableFuture<List<Chunk>> getWorldChunk(Environment env, Queue<Pair<Integer, Integer>> pairList) {
-        if (worlds.containsKey(env)) {
-            CompletableFuture<List<Chunk>> r2 = new CompletableFuture<>();
-            List<Chunk> chunkList = new ArrayList<>();
-            World world = worlds.get(env);
-            // Get the chunk, and then coincidentally check the RoseStacker
-            loadChunks(r2, world, pairList, chunkList);
-            return r2;
-        }
-        return CompletableFuture.completedFuture(Collections.emptyList());
+    private CompletableFuture<List<ScanTally>> scanWorldChunks(Environment env, List<Pair<Integer, Integer>> pairList) {
+        if (!worlds.containsKey(env) || pairList.isEmpty()) {
+            return CompletableFuture.completedFuture(Collections.emptyList());
+        }
+        return new ChunkLoader(worlds.get(env), pairList).start();
     }
 
-    private void loadChunks(CompletableFuture<List<Chunk>> r2, World world, Queue<Pair<Integer, Integer>> pairList,
-            List<Chunk> chunkList) {
-        if (pairList.isEmpty()) {
-            r2.complete(chunkList);
-            return;
+    /**
+     * Loads chunks of one world with a limited number of chunks in flight at once.
+     * Each chunk is snapshotted when the {@link SnapshotScheduler} has time in a tick and then handed to the scan threads.
+     * A chunk counts as in flight until it has been snapshotted, so chunks are not loaded faster than they can be snapshotted.
+     */
+    private class ChunkLoader {
+        private final World world;
+        private final BlockTable table;
+        private final List<Pair<Integer, Integer>> pairList;
+        private final List<CompletableFuture<ScanTally>> scans;
+        private final CompletableFuture<List<ScanTally>> done = new CompletableFuture<>();
+        private int next;
+        private int inFlight;
+
+        /**
+         * @param world - world to load chunks from
+         * @param pairList - chunk coordinates
+         */
+        ChunkLoader(World world, List<Pair<Integer, Integer>> pairList) {
+            this.world = world;
+            this.table = getTable(world);
+            this.pairList = pairList;
+            this.scans = new ArrayList<>(Collections.nCopies(pairList.size(), CompletableFuture.<ScanTally>completedFuture(null)));
+        }
+
+        /**
+         * Start loading
+         * @return future list of tallies in the same order as the chunk coordinates. Chunks that could not be loaded or were never generated have a null tally.
+         */
+        CompletableFuture<List<ScanTally>> start() {
+            loadMore();
+            return done;
+        }
+
+        /**
+         * Start loading chunks until the window is full, then complete if everything is done
+         */
+        private void loadMore() {
+            int window = addon.getSettings().getConcurrentChunkLoads();
+            if (cancelled) {
+                // Do not load any more chunks
+                next = pairList.size();
+            }
+            while (next < pairList.size() && inFlight < window) {
+                loadNext();
+            }
+            if (next == pairList.size() && inFlight == 0 && !done.isDone()) {
+                CompletableFuture.allOf(scans.toArray(new CompletableFuture[0]))
+                .thenApply(v -> scans.stream().map(CompletableFuture::join).toList())
+                .whenComplete((tallies, ex) -> {
+                    if (ex != null) {
+                        done.completeExceptionally(ex);
+                    } else {
+                        done.complete(tallies);
+                    }
+                });
+            }
         }
-        Pair<Integer, Integer> p = pairList.poll();
-        Util.getChunkAtAsync(world, p.x, p.z, world.getEnvironment().equals(Environment.NETHER)).thenAccept(chunk -> {
-            if (chunk != null) {
-                chunkList.add(chunk);
-                roseStackerCheck(chunk);
+
+        private void loadNext() {
+            int index = next++;
+            Pair<Integer, Integer> p = pairList.get(index);
+            // Chunks that have not changed since the last calculation do not need to be loaded
+            ChunkTallyCache cache = addon.getChunkCache();
+            ScanTally cached = cache == null ? null : cache.get(island, world, p.x, p.z);
+            if (cached != null) {
+                scans.set(index, CompletableFuture.completedFuture(cached));
+                return;
             }
-            loadChunks(r2, world, pairList, chunkList); // Iteration
-        });
+            inFlight++;
+            long loadStart = System.nanoTime();
+            // Without generation, chunks that have never been generated come back null and are counted as empty
+            boolean generate = !addon.getSettings().isSkipUngeneratedChunks() && world.getEnvironment().equals(Environment.NETHER);
+            Util.getChunkAtAsync(world, p.x, p.z, generate).whenComplete((chunk, e) -> {
+                // A chunk that fails to load, or has never been generated, is skipped.
+                // A cancelled calculation does not need the chunk, so it is not held.
+                if (chunk == null || cancelled) {
+                    inFlight--;
+                    loadMore();
+                    return;
+                }
+                addon.getMetrics().getChunkLoad().recordSince(loadStart);
+                // Keep the chunk loaded until there is time in a tick to snapshot it
+                chunk.addPluginChunkTicket(addon.getPlugin());
+                scans.set(index, addon.getPipeliner().getSnapshotScheduler().submit(() -> {
+                    try {
+                        return cancelled ? CompletableFuture.<ScanTally>completedFuture(null) : scanChunk(chunk);
+                    } finally {
+                        chunk.removePluginChunkTicket(addon.getPlugin());
+                        inFlight--;
+                        loadMore();
+                    }
+                }).thenCompose(Function.identity()));
+            });
+        }
+
+        /**
+         * Snapshot a loaded chunk and scan it on the scan threads
+         * @param chunk - loaded chunk
+         * @return future tally of the chunk
+         */
+        private CompletableFuture<ScanTally> scanChunk(Chunk chunk) {
+            ScanTally tally = new ScanTally(table);
+            // Check the RoseStacker and containers while the chunk is loaded
+            roseStackerCheck(chunk, tally);
+            CalculationMetrics metrics = addon.getMetrics();
+            if (addon.getSettings().isIncludeChests()) {
+                long chestStart = System.nanoTime();
+                captureChests(chunk, tally);
+                metrics.getChests().recordSince(chestStart);
+            }
+            long snapshotStart = System.nanoTime();
+            ChunkPair cp = new ChunkPair(world, chunk, chunk.getChunkSnapshot(), table);
+            metrics.getSnapshot().recordSince(snapshotStart);
+            ChunkTallyCache cache = addon.getChunkCache();
+            // Container contents and stack sizes can change without a block changing, so those chunks are always scanned again
+            ChunkTallyCache.Entry entry = cache == null || tally.containers || tally.stacks ? null : cache.reserve(island, world, chunk.getX(), chunk.getZ());
+            return CompletableFuture.supplyAsync(() -> {
+                if (cancelled) {
+                    return null;
+                }
+                long scanStart = System.nanoTime();
+                scanAsync(cp, tally);
+                // Value the container contents
+                tally.chestItems.forEach(i -> countItemStack(tally, i));
+                tally.chestItems.clear();
+                metrics.getScan().recordSince(scanStart);
+                metrics.chunkScanned();
+                chunksScanned.incrementAndGet();
+                if (entry != null) {
+                    entry.complete(tally);
+                }
+                return tally;
+            }, addon.getPipeliner().getScanPool());
+        }
     }
 
-    private void roseStackerCheck(Chunk chunk) {
+    private void roseStackerCheck(Chunk chunk, ScanTally tally) {
         if (addon.isRoseStackersEnabled()) {
             RoseStackerAPI.getInstance().getStackedBlocks(Collections.singletonList(chunk)).forEach(e -> {
                 // Blocks below sea level can be scored differently
                 boolean belowSeaLevel = seaHeight > 0 && e.getLocation().getY() <= seaHeight;
                 // Check block once because the base block will be counted in the chunk snapshot
-                for (int _x = 0; _x < e.getStackSize() - 1; _x++) {
-                    checkBlock(e.getBlock().getType(), belowSeaLevel);
-                }
+                Material type = e.getBlock().getType();
+                tally.add(tally.table.get(type), type.ordinal(), belowSeaLevel, e.getStackSize() - 1);
+                tally.stacks = true;
             });
         }
     }
 
     /**
-     * Checks if a block has been limited or not and whether a block has any value or not
-     * @param md Material
-     * @return value of the block if can be counted
+     * Copy the contents of the containers on the island in a chunk so they can be counted on the scan threads.
+     * Must be called on the main thread.
+     * @param chunk - the loaded chunk
+     * @param tally - tally to put the contents in
      */
-    private int limitCount(Material md) {
-        if (limitCount.containsKey(md)) {
-            int count = limitCount.get(md);
-            if (count > 0) {
-                limitCount.put(md, --count);
-                return getValue(md);
-            } else {
-                results.ofCount.add(md);
-                return 0;
+    private void captureChests(Chunk chunk, ScanTally tally) {
+        for (BlockState bs : chunk.getTileEntities()) {
+            if (!BlockTable.hasFlag(tally.table.get(bs.getType()), BlockTable.CONTAINER) || !(bs instanceof Container container)
+                    || !island.onIsland(bs.getLocation())) {
+                continue;
             }
+            tally.containers = true;
+            if (addon.isAdvChestEnabled()) {
+                AdvancedChest<?,?> aChest = AdvancedChestsAPI.getChestManager().getAdvancedChest(bs.getLocation());
+                if (aChest != null && aChest.getChestType().getName().equals("NORMAL")) {
+                    aChest.getPages().stream().map(ChestPage::getItems).forEach(c -> {
+                        for (Object i : c) {
+                            if (i != null) {
+                                // These are the live items, so copy them
+                                tally.chestItems.add(((ItemStack)i).clone());
+                            }
+                        }
+                    });
+                    continue;
+                }
+            }
+            // Regular chest. The snapshot inventory is already a copy.
+            for (ItemStack i : container.getSnapshotInventory().getContents()) {
+                if (i != null) {
+                    tally.chestItems.add(i);
+                }
+            }
+        }
+    }
+
+    private void countItemStack(ScanTally tally, ItemStack i) {
+        if (i.getType().isBlock()) {
+            tally.add(tally.table.get(i.getType()), i.getType().ordinal(), false, i.getAmount());
         }
-        return getValue(md);
     }
 
+    record ChunkPair(World world, Chunk chunk, ChunkSnapshot chunkSnapshot, BlockTable table) {}
 
     /**
-     * Scan all containers in a chunk and count their blocks
-     * @param chunk - the chunk to scan
+     * Count the blocks on the island
+     * @param cp chunk to scan
+     * @param tally tally to count the blocks in
      */
-    private void scanChests(Chunk chunk) {
-        // Count blocks in chests
-        for (BlockState bs : chunk.getTileEntities()) {
-            if (bs instanceof Container) {
-                if (addon.isAdvChestEnabled()) {
-                    AdvancedChest<?,?> aChest = AdvancedChestsAPI.getChestManager().getAdvancedChest(bs.getLocation());
-                    if (aChest != null && aChest.getChestType().getName().equals("NORMAL")) {
-                        aChest.getPages().stream().map(ChestPage::getItems).forEach(c -> {
-                            for (Object i : c) {
-                                countItemStack((ItemStack)i);
-                            }
-                        });
+    void scanAsync(ChunkPair cp, ScanTally tally) {
+        int minHeight = cp.world.getMinHeight();
+        int maxHeight = cp.world.getMaxHeight();
+        boolean skipEmptySections = addon.getSettings().isSkipEmptySections();
+        boolean useHeightMap = addon.getSettings().isUseHeightMap();
+        // Protection zone in chunk coordinates. Columns outside it are not counted.
+        int fromX = Math.max(0, island.getMinProtectedX() - cp.chunkSnapshot.getX() * 16);
+        int toX = Math.min(16, island.getMinProtectedX() + island.getProtectionRange() * 2 - cp.chunkSnapshot.getX() * 16);
+        int fromZ = Math.max(0, island.getMinProtectedZ() - cp.chunkSnapshot.getZ() * 16);
+        int toZ = Math.min(16, island.getMinProtectedZ() + island.getProtectionRange() * 2 - cp.chunkSnapshot.getZ() * 16);
+        // Air that is skipped over is counted in one go at the end
+        int airBelowSeaLevel = 0;
+        int airAboveSeaLevel = 0;
+        for (int x = fromX; x < toX; x++) {
+            for (int z = fromZ; z < toZ; z++) {
+                // Only count to the highest block in the column if the height map can be used
+                int top = useHeightMap ? Math.max(minHeight, Math.min(maxHeight, cp.chunkSnapshot.getHighestBlockYAt(x, z) + 1)) : maxHeight;
+                int y = minHeight;
+                while (y < top) {
+                    // Skip whole sections that only contain air. The kind of air is not known, so it is all counted as AIR.
+                    if (skipEmptySections && ((y - minHeight) & 15) == 0 && cp.chunkSnapshot.isSectionEmpty((y - minHeight) >> 4)) {
+                        int sectionTop = Math.min(y + 16, top);
+                        int below = countBelowSeaLevel(y, sectionTop);
+                        airBelowSeaLevel += below;
+                        airAboveSeaLevel += sectionTop - y - below;
+                        y = sectionTop;
                         continue;
                     }
+                    scanBlock(cp, tally, x, y, z);
+                    y++;
                 }
-                // Regular chest
-                ((Container)bs).getSnapshotInventory().forEach(this::countItemStack);
-            }
-        }
-    }
-
-    private void countItemStack(ItemStack i) {
-        if (i != null && i.getType().isBlock()) {
-            for (int c = 0; c < i.getAmount(); c++) {
-                checkBlock(i.getType(), false);
+                // Everything above the top of the column is air
+                int below = countBelowSeaLevel(top, maxHeight);
+                airBelowSeaLevel += below;
+                airAboveSeaLevel += maxHeight - top - below;
             }
         }
+        long air = cp.table.get(Material.AIR);
+        tally.add(air, Material.AIR.ordinal(), true, airBelowSeaLevel);
+        tally.add(air, Material.AIR.ordinal(), false, airAboveSeaLevel);
     }
 
     /**
-     * Scan the chunk chests and count the blocks. Note that the chunks are a list of all the island chunks
-     * in a particular world, so the memory usage is high, but I think most servers can handle it.
-     * @param chunks - a list of chunks to scan
-     * @return future that completes when the scan is done and supplies a boolean that will be true if the scan was successful, false if not
+     * Count the block at a position in a chunk snapshot
+     * @param cp chunk being scanned
+     * @param tally tally to count the block in
+     * @param x - x coordinate inside the chunk
+     * @param y - y coordinate
+     * @param z - z coordinate inside the chunk
      */
-    private CompletableFuture<Boolean> scanChunk(List<Chunk> chunks) {
-        // If the chunk hasn't been generated, return
-        if (chunks == null || chunks.isEmpty()) {
-            return CompletableFuture.completedFuture(false);
+    private void scanBlock(ChunkPair cp, ScanTally tally, int x, int y, int z) {
+        Material material = cp.chunkSnapshot.getBlockType(x, y, z);
+        long entry = cp.table.get(material);
+        boolean belowSeaLevel = seaHeight > 0 && y <= seaHeight;
+        // Slabs can be doubled, so check them twice
+        if (BlockTable.hasFlag(entry, BlockTable.SLAB)) {
+            BlockData blockData = cp.chunkSnapshot.getBlockData(x, y, z);
+            if (blockData instanceof Slab slab && slab.getType().equals(Slab.Type.DOUBLE)) {
+                tally.add(entry, material.ordinal(), belowSeaLevel, 1);
+            }
         }
-        // Count blocks in chunk
-        CompletableFuture<Boolean> result = new CompletableFuture<>();
-        /*
-         * At this point, we need to grab a snapshot of each chunk and then scan it async.
-         * At the end, we make the CompletableFuture true to show it is done.
-         * I'm not sure how much lag this will cause, but as all the chunks are loaded, maybe not that much.
-         */
-        List<ChunkPair> preLoad = chunks.stream().map(c -> new ChunkPair(c.getWorld(), c, c.getChunkSnapshot())).toList();
-        Bukkit.getScheduler().runTaskAsynchronously(BentoBox.getInstance(), () -> {
-            preLoad.forEach(this::scanAsync);
-            // Once they are all done, return to the main thread.
-            Bukkit.getScheduler().runTask(addon.getPlugin(),() -> result.complete(true));
-        });
-        return result;
+        // Hook for Wild Stackers (Blocks and Spawners Only) - this has to use the real chunk
+        if (BlockTable.hasFlag(entry, BlockTable.STACKER) && addon.isStackersEnabled()) {
+            tally.stackedBlocks.add(new Location(cp.world, x + cp.chunkSnapshot.getX() * 16,y,z + cp.chunkSnapshot.getZ() * 16));
+        }
+        // Add the value of the block's material
+        tally.add(entry, material.ordinal(), belowSeaLevel, 1);
     }
 
-    record ChunkPair(World world, Chunk chunk, ChunkSnapshot chunkSnapshot) {}
-
     /**
-     * Count the blocks on the island
-     * @param cp chunk to scan
+     * Get how many y coordinates in a range are below sea level
+     * @param from - lowest y, inclusive
+     * @param to - highest y, exclusive
+     * @return number of y coordinates at or below sea level
      */
-    private void scanAsync(ChunkPair cp) {
-        for (int x = 0; x< 16; x++) {
-            // Check if the block coordinate is inside the protection zone and if not, don't count it
-            if (cp.chunkSnapshot.getX() * 16 + x < island.getMinProtectedX() || cp.chunkSnapshot.getX() * 16 + x >= island.getMinProtectedX() + island.getProtectionRange() * 2) {
-                continue;
-            }
-            for (int z = 0; z < 16; z++) {
-                // Check if the block coordinate is inside the protection zone and if not, don't count it
-                if (cp.chunkSnapshot.getZ() * 16 + z < island.getMinProtectedZ() || cp.chunkSnapshot.getZ() * 16 + z >= island.getMinProtectedZ() + island.getProtectionRange() * 2) {
-                    continue;
-                }
-                // Only count to the highest block in the world for some optimization
-                for (int y = cp.world.getMinHeight(); y < cp.world.getMaxHeight(); y++) {
-                    BlockData blockData = cp.chunkSnapshot.getBlockData(x, y, z);
-                    boolean belowSeaLevel = seaHeight > 0 && y <= seaHeight;
-                    // Slabs can be doubled, so check them twice
-                    if (Tag.SLABS.isTagged(blockData.getMaterial())) {
-                        Slab slab = (Slab)blockData;
-                        if (slab.getType().equals(Slab.Type.DOUBLE)) {
-                            checkBlock(blockData.getMaterial(), belowSeaLevel);
-                        }
-                    }
-                    // Hook for Wild Stackers (Blocks and Spawners Only) - this has to use the real chunk
-                    if (addon.isStackersEnabled() && (blockData.getMaterial().equals(Material.CAULDRON) || blockData.getMaterial().equals(Material.SPAWNER))) {
-                        stackedBlocks.add(new Location(cp.world, x + cp.chunkSnapshot.getX() * 16,y,z + cp.chunkSnapshot.getZ() * 16));
-                    }
-                    // Scan chests
-                    if (addon.getSettings().isIncludeChests() && CHESTS.contains(blockData.getMaterial())) {
-                        chestBlocks.add(cp.chunk);
-                    }
-                    // Add the value of the block's material
-                    checkBlock(blockData.getMaterial(), belowSeaLevel);
-                }
-            }
-        }
+    private int countBelowSeaLevel(int from, int to) {
+        return seaHeight > 0 ? Math.max(0, Math.min(to, seaHeight + 1) - from) : 0;
     }
 
     /**
@@ -530,51 +683,40 @@ public class IslandLevelCalculator {
             return CompletableFuture.completedFuture(false);
         }
         // Retrieve and remove from the queue
-        Queue<Pair<Integer, Integer>> pairList = new ConcurrentLinkedQueue<>();
+        List<Pair<Integer, Integer>> pairList = new ArrayList<>();
+        // Ask for as many chunks as can be snapshotted in a few ticks
+        int batchSize = addon.getPipeliner().getSnapshotScheduler().getBatchSize(worlds.size());
         int i = 0;
-        while (!chunksToCheck.isEmpty() && i++ < CHUNKS_TO_SCAN) {
+        while (!chunksToCheck.isEmpty() && i++ < batchSize) {
             pairList.add(chunksToCheck.poll());
         }
-        Queue<Pair<Integer, Integer>> endPairList = new ConcurrentLinkedQueue<>(pairList);
-        Queue<Pair<Integer, Integer>> netherPairList = new ConcurrentLinkedQueue<>(pairList);
         // Set up the result
         CompletableFuture<Boolean> result = new CompletableFuture<>();
-        // Get chunks and scan
-        // Get chunks and scan
-        getWorldChunk(Environment.THE_END, endPairList).thenAccept(endChunks ->
-        scanChunk(endChunks).thenAccept(b ->
-        getWorldChunk(Environment.NETHER, netherPairList).thenAccept(netherChunks ->
-        scanChunk(netherChunks).thenAccept(b2 ->
-        getWorldChunk(Environment.NORMAL, pairList).thenAccept(normalChunks ->
-        scanChunk(normalChunks).thenAccept(b3 ->
-        // Complete the result now that all chunks have been scanned
-        result.complete(!chunksToCheck.isEmpty()))))
-                )
-                )
-                );
+        // Get chunks and scan all the dimensions at the same time
+        CompletableFuture<List<ScanTally>> end = scanWorldChunks(Environment.THE_END, pairList);
+        CompletableFuture<List<ScanTally>> nether = scanWorldChunks(Environment.NETHER, pairList);
+        CompletableFuture<List<ScanTally>> normal = scanWorldChunks(Environment.NORMAL, pairList);
+        CompletableFuture.allOf(end, nether, normal).whenComplete((v, ex) ->
+        // Once they are all done, return to the main thread.
+        Bukkit.getScheduler().runTask(addon.getPlugin(), () -> {
+            try {
+                if (ex != null) {
+                    addon.logError("Error scanning chunks for island " + island.getUniqueId() + ": " + ex.getMessage());
+                } else {
+                    // Merge in a fixed order so that limits are used up the same way every time
+                    Stream.of(end, nether, normal).map(CompletableFuture::join).flatMap(List::stream)
+                    .filter(Objects::nonNull).forEach(this::mergeTally);
+                }
+                // Complete the result now that all chunks have been scanned
+                result.complete(!chunksToCheck.isEmpty());
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            }
+        }));
 
         return result;
     }
 
-    private Collection<String> sortedReport(int total, Multiset<Material> materialCount) {
-        Collection<String> r = new ArrayList<>();
-        Iterable<Multiset.Entry<Material>> entriesSortedByCount = Multisets.copyHighestCountFirst(materialCount).entrySet();
-        for (Entry<Material> en : entriesSortedByCount) {
-            Material type = en.getElement();
-
-            int value = getValue(type);
-
-            r.add(type.toString() + ":"
-                    + String.format("%,d", en.getCount()) + " blocks x " + value + " = " + (value * en.getCount()));
-            total += (value * en.getCount());
-
-        }
-        r.add("Subtotal = " + total);
-        r.add(LINE_BREAK);
-        return r;
-    }
-
-
     /**
      * Finalizes the calculations and makes the report
      */
@@ -607,17 +749,24 @@ public class IslandLevelCalculator {
         this.results.level.set(calculateLevel(blockAndDeathPoints));
 
         // Calculate how many points are required to get to the next level
-        long nextLevel = this.results.level.get();
-        long blocks = blockAndDeathPoints;
-        while (nextLevel < this.results.level.get() + 1 && blocks - blockAndDeathPoints < MAX_AMOUNT) {
-            nextLevel = calculateLevel(++blocks);
-        }
-        this.results.pointsToNextLevel.set(blocks - blockAndDeathPoints);
-
-        // Report
-        results.report = getReport();
-        // Set the duration
-        addon.getPipeliner().setTime(System.currentTimeMillis() - duration);
+        this.results.pointsToNextLevel.set(addon.getLevelFormula().pointsToNextLevel(blockAndDeathPoints, addon.getSettings().getLevelCost()));
+
+        // The report is only built if it is asked for. Anything that could change is recorded now.
+        String header = "Level Log for island in " + addon.getPlugin().getIWM().getFriendlyName(island.getWorld()) + " at " + Util.xyz(island.getCenter().toVector());
+        UUID owner = island.getOwner();
+        Map<Material, Integer> limits = new EnumMap<>(Material.class);
+        results.ofCount.forEach((type, count) -> {
+            Integer limit = addon.getBlockConfig().getBlockLimits().get(type);
+            if (limit != null) {
+                limits.put(type, limit);
+            }
+        });
+        ReportInfo info = new ReportInfo(header, owner, addon.getManager().getIslandLevel(island.getWorld(), owner),
+                addon.getSettings().getLevelCalc(), addon.getSettings().getLevelCost(), addon.getSettings().getUnderWaterMultiplier(),
+                addon.getSettings().isZeroNewIslandLevels(), tables.get(Environment.NORMAL), limits);
+        // Only the results and what the report needs are kept, not this calculator
+        Results calculated = results;
+        calculated.setReport(() -> info.build(calculated));
         // All done.
     }
 
@@ -634,74 +783,95 @@ public class IslandLevelCalculator {
             if (!Bukkit.isPrimaryThread()) {
                 addon.getPlugin().logError("scanChunk not on Primary Thread!");
             }
+            if (cancelled) {
+                // The results have already been completed
+                return;
+            }
             // Timeout check
-            if (System.currentTimeMillis() - pipeliner.getInProcessQueue().get(this) > addon.getSettings().getCalculationTimeout() * 60000) {
+            if (System.currentTimeMillis() - pipeliner.getInProcessQueue().getOrDefault(this, System.currentTimeMillis()) > addon.getSettings().getCalculationTimeout() * 60000) {
                 // Done
-                pipeliner.getInProcessQueue().remove(this);
-                getR().complete(new Results(Result.TIMEOUT));
-                addon.logError("Level calculation timed out after " + addon.getSettings().getCalculationTimeout() + "m for island: " + getIsland());
-                if (!isNotZeroIsland()) {
-                    addon.logError("Island level was being zeroed.");
-                }
+                timeOut();
                 return;
             }
-            if (Boolean.TRUE.equals(r) && !pipeliner.getTask().isCancelled()) {
+            if (Boolean.TRUE.equals(r) && !pipeliner.isStopped()) {
                 // scanNextChunk returns true if there are more chunks to scan
                 scanIsland(pipeliner);
             } else {
-                // Done
-                pipeliner.getInProcessQueue().remove(this);
+                // Done. The pipeliner frees the slot when the results are complete.
                 // Chunk finished
                 // This was the last chunk
-                handleStackedBlocks();
-                handleChests();
-                long checkTime = System.currentTimeMillis();
-                finishTask = Bukkit.getScheduler().runTaskTimer(addon.getPlugin(), () -> {
-                    // Check every half second if all the chests and stacks have been cleared
-                    if ((chestBlocks.isEmpty() && stackedBlocks.isEmpty()) || System.currentTimeMillis() - checkTime > MAX_AMOUNT) {
-                        this.tidyUp();
-                        this.getR().complete(getResults());
-                        finishTask.cancel();
+                if (addon.getChunkCache() != null) {
+                    addon.getChunkCache().save(island);
+                }
+                // Finish as soon as the last stack has been looked up, or give up waiting after a while
+                long stackStart = System.nanoTime();
+                handleStackedBlocks().completeOnTimeout(null, MAX_AMOUNT, TimeUnit.MILLISECONDS).whenComplete((v, ex) -> {
+                    if (!stackedBlocks.isEmpty()) {
+                        addon.getMetrics().getStackers().recordSince(stackStart);
+                    }
+                    if (ex != null) {
+                        addon.logError("Error looking up stacked blocks for island " + island.getUniqueId() + ": " + ex.getMessage());
                     }
-                }, 0, 10L);
+                    if (Bukkit.isPrimaryThread()) {
+                        finish();
+                    } else {
+                        Bukkit.getScheduler().runTask(addon.getPlugin(), this::finish);
+                    }
+                });
 
             }
+        }).exceptionally(ex -> {
+            fail(ex);
+            return null;
         });
     }
 
-    private void handleChests() {
-        Iterator<Chunk> it = chestBlocks.iterator();
-        while(it.hasNext()) {
-            Chunk v = it.next();
-            Util.getChunkAtAsync(v.getWorld(), v.getX(), v.getZ()).thenAccept(c -> {
-                scanChests(c);
-                it.remove();
-            });
+    /**
+     * Complete the calculation. Must be called on the main thread.
+     */
+    private void finish() {
+        if (finished || cancelled) {
+            return;
+        }
+        finished = true;
+        try {
+            long start = System.nanoTime();
+            tidyUp();
+            addon.getMetrics().getTidyUp().recordSince(start);
+            getR().complete(getResults());
+        } catch (Exception e) {
+            // The results must always be completed, otherwise the slot is never freed
+            fail(e);
         }
     }
 
-    private void handleStackedBlocks() {
+    /**
+     * Look up the size of WildStacker stacks and count them
+     * @return future that completes when all the stacks have been counted
+     */
+    private CompletableFuture<Void> handleStackedBlocks() {
         // Deal with any stacked blocks
-        Iterator<Location> it = stackedBlocks.iterator();
-        while (it.hasNext()) {
-            Location v = it.next();
-            Util.getChunkAtAsync(v).thenAccept(c -> {
+        CompletableFuture<?>[] lookups = new CompletableFuture<?>[stackedBlocks.size()];
+        for (int i = 0; i < lookups.length; i++) {
+            Location v = stackedBlocks.get(i);
+            lookups[i] = Util.getChunkAtAsync(v).thenAccept(c -> {
+                if (finished) {
+                    // Too late
+                    return;
+                }
                 Block stackedBlock = v.getBlock();
+                BlockTable table = getTable(v.getWorld());
                 boolean belowSeaLevel = seaHeight > 0 && v.getBlockY() <= seaHeight;
                 if (WildStackerAPI.getWildStacker().getSystemManager().isStackedBarrel(stackedBlock)) {
                     StackedBarrel barrel = WildStackerAPI.getStackedBarrel(stackedBlock);
                     int barrelAmt = WildStackerAPI.getBarrelAmount(stackedBlock);
-                    for (int _x = 0; _x < barrelAmt; _x++) {
-                        checkBlock(barrel.getType(), belowSeaLevel);
-                    }
+                    checkBlocks(table.get(barrel.getType()), barrel.getType(), belowSeaLevel, barrelAmt);
                 } else if (WildStackerAPI.getWildStacker().getSystemManager().isStackedSpawner(stackedBlock)) {
                     int spawnerAmt = WildStackerAPI.getSpawnersAmount((CreatureSpawner) stackedBlock.getState());
-                    for (int _x = 0; _x < spawnerAmt; _x++) {
-                        checkBlock(stackedBlock.getType(), belowSeaLevel);
-                    }
+                    checkBlocks(table.get(stackedBlock.getType()), stackedBlock.getType(), belowSeaLevel, spawnerAmt);
                 }
-                it.remove();
             });
         }
+        return CompletableFuture.allOf(lookups);
     }
 }
@@ -0,0 +1,210 @@
+package world.bentobox.level.calculators;
+
+/**
+ * The island level formula, parsed once into a tree that can be evaluated for any number of block points.
+ * The formula can use the variables blocks and level_cost, numbers, +, -, *, /, ^, brackets and the
+ * functions sqrt, sin, cos and tan. Angles are in degrees.
+ * Formulas are immutable, so one can be shared between threads.
+ * @author tastybento
+ *
+ */
+public class LevelFormula {
+
+    /**
+     * Part of the formula
+     */
+    private interface Node {
+        double eval(double blocks, double levelCost);
+    }
+
+    private final String formula;
+    private final Node root;
+    // True if the formula is the default blocks / level_cost, which can be solved for blocks directly
+    private final boolean linear;
+
+    private LevelFormula(String formula, Node root) {
+        this.formula = formula;
+        this.root = root;
+        this.linear = formula.replace(" ", "").equals("blocks/level_cost");
+    }
+
+    /**
+     * Parse a formula
+     * @param formula - formula, e.g., blocks / level_cost
+     * @return compiled formula
+     * @throws IllegalArgumentException if the formula cannot be parsed
+     */
+    public static LevelFormula compile(String formula) {
+        return new LevelFormula(formula, new Parser(formula).parse());
+    }
+
+    /**
+     * Evaluate the formula
+     * @param blocks - block points
+     * @param levelCost - level cost
+     * @return result
+     */
+    public double evaluate(long blocks, long levelCost) {
+        return root.eval(blocks, levelCost);
+    }
+
+    /**
+     * Get how many more block points are needed for the level to go up by one.
+     * The level is the result of the formula rounded toward zero. The formula must not go down when blocks go up.
+     * @param blocks - block points
+     * @param levelCost - level cost
+     * @return points needed, or 0 if no number of points will give the next level
+     */
+    public long pointsToNextLevel(long blocks, long levelCost) {
+        long level = (long)evaluate(blocks, levelCost);
+        if (linear && levelCost > 0) {
+            // Lowest number of blocks that gives level + 1
+            long next = level + 1 > 0 ? (level + 1) * levelCost : level * levelCost + 1;
+            return next - blocks;
+        }
+        // Double the points until they are enough
+        long high = 1;
+        while ((long)evaluate(blocks + high, levelCost) <= level) {
+            if (high > (Long.MAX_VALUE - Math.max(0, blocks)) / 2) {
+                return 0;
+            }
+            high *= 2;
+        }
+        // Then find the lowest that is enough. Low is never enough, high always is.
+        long low = high / 2;
+        while (high - low > 1) {
+            long mid = low + (high - low) / 2;
+            if ((long)evaluate(blocks + mid, levelCost) > level) {
+                high = mid;
+            } else {
+                low = mid;
+            }
+        }
+        return high;
+    }
+
+    /**
+     * @return the formula that was compiled
+     */
+    public String getFormula() {
+        return formula;
+    }
+
+    /**
+     * Recursive descent parser
+     * Grammar:
+     * expression = term | expression `+` term | expression `-` term
+     * term = factor | term `*` factor | term `/` factor
+     * factor = `+` factor | `-` factor | `(` expression `)`
+     *        | number | variable | functionName factor | factor `^` factor
+     */
+    private static class Parser {
+        private final String str;
+        private int pos = -1;
+        private int ch;
+
+        Parser(String str) {
+            this.str = str;
+        }
+
+        boolean eat(int charToEat) {
+            while (ch == ' ') nextChar();
+            if (ch == charToEat) {
+                nextChar();
+                return true;
+            }
+            return false;
+        }
+
+        void nextChar() {
+            ch = (++pos < str.length()) ? str.charAt(pos) : -1;
+        }
+
+        Node parse() {
+            nextChar();
+            Node x = parseExpression();
+            if (pos < str.length()) throw new IllegalArgumentException("Unexpected: " + (char)ch);
+            return x;
+        }
+
+        Node parseExpression() {
+            Node x = parseTerm();
+            for (;;) {
+                Node a = x;
+                if (eat('+')) { // addition
+                    Node b = parseTerm();
+                    x = (v, c) -> a.eval(v, c) + b.eval(v, c);
+                } else if (eat('-')) { // subtraction
+                    Node b = parseTerm();
+                    x = (v, c) -> a.eval(v, c) - b.eval(v, c);
+                } else {
+                    return x;
+                }
+            }
+        }
+
+        Node parseTerm() {
+            Node x = parseFactor();
+            for (;;) {
+                Node a = x;
+                if (eat('*')) { // multiplication
+                    Node b = parseFactor();
+                    x = (v, c) -> a.eval(v, c) * b.eval(v, c);
+                } else if (eat('/')) { // division
+                    Node b = parseFactor();
+                    x = (v, c) -> a.eval(v, c) / b.eval(v, c);
+                } else {
+                    return x;
+                }
+            }
+        }
+
+        Node parseFactor() {
+            if (eat('+')) return parseFactor(); // unary plus
+            if (eat('-')) { // unary minus
+                Node a = parseFactor();
+                return (v, c) -> -a.eval(v, c);
+            }
+
+            Node x;
+            int startPos = this.pos;
+            if (eat('(')) { // parentheses
+                x = parseExpression();
+                eat(')');
+            } else if ((ch >= '0' && ch <= '9') || ch == '.') { // numbers
+                while ((ch >= '0' && ch <= '9') || ch == '.') nextChar();
+                double n = Double.parseDouble(str.substring(startPos, this.pos));
+                x = (v, c) -> n;
+            } else if ((ch >= 'a' && ch <= 'z') || ch == '_') { // variables and functions
+                while ((ch >= 'a' && ch <= 'z') || ch == '_') nextChar();
+                String name = str.substring(startPos, this.pos);
+                x = switch (name) {
+                case "blocks" -> (v, c) -> v;
+                case "level_cost" -> (v, c) -> c;
+                default -> parseFunction(name);
+                };
+            } else {
+                throw new IllegalArgumentException("Unexpected: " + (char)ch);
+            }
+
+            if (eat('^')) { // exponentiation
+                Node a = x;
+                Node b = parseFactor();
+                x = (v, c) -> Math.pow(a.eval(v, c), b.eval(v, c));
+            }
+
+            return x;
+        }
+
+        Node parseFunction(String func) {
+            Node a = parseFactor();
+            return switch (func) {
+            case "sqrt" -> (v, c) -> Math.sqrt(a.eval(v, c));
+            case "sin" -> (v, c) -> Math.sin(Math.toRadians(a.eval(v, c)));
+            case "cos" -> (v, c) -> Math.cos(Math.toRadians(a.eval(v, c)));
+            case "tan" -> (v, c) -> Math.tan(Math.toRadians(a.eval(v, c)));
+            default -> throw new IllegalArgumentException("Unknown function: " + func);
+            };
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package world.bentobox.level.calculators;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.World.Environment;
+import org.bukkit.block.Block;
+import org.bukkit.scheduler.BukkitTask;
+
+import world.bentobox.bentobox.database.objects.Island;
+import world.bentobox.bentobox.util.Util;
+import world.bentobox.level.Level;
+import world.bentobox.level.calculators.Results.Result;
+import world.bentobox.level.config.BlockTable;
+
+/**
+ * Keeps the levels of calculated islands up to date as blocks change.
+ * A full calculation gives the starting point for an island. After that, every block change that is reported
+ * adds or takes away the value of the blocks using the same block values and limits as {@link IslandLevelCalculator}.
+ * Changed islands have their level updated once a second and are queued for a full calculation
+ * now and again so that changes that could not be tracked are corrected.
+ * Only islands with a member online are tracked. Other islands are dropped once a minute and are tracked again
+ * after their next full calculation.
+ * Changes made while a full calculation is running are replaced by the results of that calculation, so a change
+ * to a chunk that had already been scanned is lost until the next full calculation. When that may have happened,
+ * the island keeps its place in the full calculation schedule instead of starting it again.
+ * Must only be used on the main thread.
+ * @author tastybento
+ *
+ */
+public class LevelTracker {
+
+    private static final long UPDATE_TICKS = 20L;
+    private static final int SWEEP_UPDATES = 60; // Once a minute
+    private static final Material[] MATERIALS = Material.values();
+
+    private final Level addon;
+    private final Map<String, LiveTally> tallies = new HashMap<>();
+    private final Set<String> changed = new HashSet<>();
+    private final BukkitTask task;
+    private int updates;
+
+    /**
+     * Live block points of one island
+     */
+    private static class LiveTally {
+        private long rawBlockCount;
+        private long underWaterBlockCount;
+        private int deathHandicap;
+        private long initialLevel;
+        // Ordinals of the limited materials in order, with the remaining limit and the number of blocks over the limit of each
+        private final int[] limited;
+        private final int[] limitCount;
+        private final int[] ofCount;
+        private long lastFullScan = System.currentTimeMillis();
+        private long lastChange;
+
+        /**
+         * @param limited - ordinals of the limited materials, in ascending order
+         */
+        private LiveTally(int[] limited) {
+            this.limited = limited;
+            this.limitCount = new int[limited.length];
+            this.ofCount = new int[limited.length];
+        }
+
+        /**
+         * Add or remove the value of one block
+         * @param entry - block table entry for the material
+         * @param ordinal - material ordinal
+         * @param belowSeaLevel - true if below sea level
+         * @param add - true if the block was added, false if it was removed
+         */
+        private void change(long entry, int ordinal, boolean belowSeaLevel, boolean add) {
+            // Limits added since the island was calculated are not known until the next calculation
+            int i = BlockTable.hasFlag(entry, BlockTable.LIMITED) ? Arrays.binarySearch(limited, ordinal) : -1;
+            if (i >= 0) {
+                if (add && limitCount[i] <= 0) {
+                    ofCount[i]++;
+                    return;
+                }
+                if (!add && ofCount[i] > 0) {
+                    // One of the blocks that were not counted has gone
+                    ofCount[i]--;
+                    return;
+                }
+                limitCount[i] += add ? -1 : 1;
+            }
+            long value = add ? BlockTable.getValue(entry) : -BlockTable.getValue(entry);
+            if (belowSeaLevel) {
+                underWaterBlockCount += value;
+            } else {
+                rawBlockCount += value;
+            }
+        }
+    }
+
+    /**
+     * @param addon - Level addon
+     */
+    public LevelTracker(Level addon) {
+        this.addon = addon;
+        task = Bukkit.getScheduler().runTaskTimer(addon.getPlugin(), this::update, UPDATE_TICKS, UPDATE_TICKS);
+    }
+
+    /**
+     * Start tracking an island from the results of a full calculation.
+     * Islands without a member online are not tracked.
+     * @param island - island
+     * @param results - results of the calculation
+     */
+    public void reset(Island island, Results results) {
+        if (!results.getState().equals(Result.AVAILABLE)) {
+            return;
+        }
+        String id = island.getUniqueId();
+        LiveTally old = tallies.remove(id);
+        if (!isActive(island)) {
+            changed.remove(id);
+            return;
+        }
+        // Work out how much of each limit is left
+        BlockTable table = addon.getBlockConfig().getTable(island.getWorld());
+        LiveTally t = new LiveTally(table.getLimited());
+        // The underwater value has already been added to the total with the multiplier
+        t.underWaterBlockCount = results.underWaterBlockCount.get();
+        t.rawBlockCount = results.rawBlockCount.get() - (long)(t.underWaterBlockCount * addon.getSettings().getUnderWaterMultiplier());
+        t.deathHandicap = results.getDeathHandicap();
+        t.initialLevel = results.getInitialLevel();
+        for (int i = 0; i < t.limited.length; i++) {
+            Material m = MATERIALS[t.limited[i]];
+            int over = results.ofCount.count(m);
+            t.ofCount[i] = over;
+            t.limitCount[i] = table.getLimit(t.limited[i]) - (results.mdCount.count(m) + results.uwCount.count(m) - over);
+        }
+        tallies.put(id, t);
+        if (old != null && old.lastChange >= results.created) {
+            // Blocks changed during the calculation may not be in the results, so do not put off the next one
+            t.lastFullScan = old.lastFullScan;
+            t.lastChange = old.lastChange;
+        } else {
+            changed.remove(id);
+        }
+    }
+
+    /**
+     * @param island - island
+     * @return true if a member of the island is online
+     */
+    private boolean isActive(Island island) {
+        return !island.isDeleted() && island.getOwner() != null
+                && island.getMemberSet().stream().anyMatch(uuid -> Bukkit.getPlayer(uuid) != null);
+    }
+
+    /**
+     * Stop tracking an island
+     * @param uniqueId - island unique id
+     */
+    public void remove(String uniqueId) {
+        tallies.remove(uniqueId);
+        changed.remove(uniqueId);
+    }
+
+    /**
+     * Report that a block has changed. Blocks that are not on a tracked island are ignored.
+     * @param block - block that changed
+     * @param from - material before the change
+     * @param to - material after the change
+     */
+    public void blockChanged(Block block, Material from, Material to) {
+        blockChanged(block, from, 1, to, 1);
+    }
+
+    /**
+     * Report that a block has changed where the block may count more than once, e.g., a double slab.
+     * Blocks that are not on a tracked island are ignored.
+     * @param block - block that changed
+     * @param from - material before the change
+     * @param fromAmount - number of blocks the material counted as before the change
+     * @param to - material after the change
+     * @param toAmount - number of blocks the material counts as after the change
+     */
+    public void blockChanged(Block block, Material from, int fromAmount, Material to, int toAmount) {
+        if (from == to && fromAmount == toAmount) {
+            return;
+        }
+        World world = block.getWorld();
+        if ((world.getEnvironment() == Environment.NETHER && !addon.getSettings().isNether())
+                || (world.getEnvironment() == Environment.THE_END && !addon.getSettings().isEnd())) {
+            return;
+        }
+        Optional<Island> island = addon.getIslands().getProtectedIslandAt(block.getLocation());
+        if (island.isEmpty()) {
+            return;
+        }
+        LiveTally t = tallies.get(island.get().getUniqueId());
+        if (t == null || !Util.sameWorld(world, island.get().getWorld())) {
+            return;
+        }
+        BlockTable table = addon.getBlockConfig().getTable(world);
+        int seaHeight = addon.getPlugin().getIWM().getSeaHeight(island.get().getWorld());
+        boolean belowSeaLevel = seaHeight > 0 && block.getY() <= seaHeight;
+        for (int i = 0; i < fromAmount; i++) {
+            t.change(table.get(from), from.ordinal(), belowSeaLevel, false);
+        }
+        for (int i = 0; i < toAmount; i++) {
+            t.change(table.get(to), to.ordinal(), belowSeaLevel, true);
+        }
+        t.lastChange = System.currentTimeMillis();
+        changed.add(island.get().getUniqueId());
+    }
+
+    /**
+     * Update the levels of islands that have changed
+     */
+    private void update() {
+        if (++updates % SWEEP_UPDATES == 0) {
+            sweep();
+        }
+        long now = System.currentTimeMillis();
+        long reconcile = addon.getSettings().getReconcileInterval() * 60000L;
+        Iterator<String> it = changed.iterator();
+        while (it.hasNext()) {
+            String id = it.next();
+            it.remove();
+            LiveTally t = tallies.get(id);
+            Island island = addon.getIslands().getIslandById(id).orElse(null);
+            if (t == null || island == null || island.isDeleted() || island.getOwner() == null) {
+                tallies.remove(id);
+                continue;
+            }
+            long blockAndDeathPoints = t.rawBlockCount + (long)(t.underWaterBlockCount * addon.getSettings().getUnderWaterMultiplier());
+            if (addon.getSettings().getDeathPenalty() > 0) {
+                blockAndDeathPoints -= (long)t.deathHandicap * addon.getSettings().getDeathPenalty();
+            }
+            long level = IslandLevelCalculator.calculateLevel(addon, blockAndDeathPoints, t.initialLevel);
+            long pointsToNextLevel = addon.getLevelFormula().pointsToNextLevel(blockAndDeathPoints, addon.getSettings().getLevelCost());
+            addon.getManager().setLiveLevel(island, level, pointsToNextLevel);
+            // Correct the level with a full calculation now and again
+            if (reconcile > 0 && now - t.lastFullScan > reconcile) {
+                t.lastFullScan = now;
+                addon.getManager().calculateLevel(island.getOwner(), island);
+            }
+        }
+    }
+
+    /**
+     * Stop tracking islands that no longer have a member online. Islands that have changed are updated first.
+     */
+    private void sweep() {
+        tallies.keySet().removeIf(id -> !changed.contains(id)
+                && addon.getIslands().getIslandById(id).filter(this::isActive).isEmpty());
+    }
+
+    /**
+     * Stop tracking
+     */
+    public void stop() {
+        task.cancel();
+        tallies.clear();
+        changed.clear();
+    }
+}
@@ -0,0 +1,195 @@
+package world.bentobox.level.calculators;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ObjIntConsumer;
+
+import org.bukkit.Material;
+
+import world.bentobox.bentobox.util.Pair;
+
+/**
+ * Counts blocks by material.
+ * Counts are kept in an array indexed by {@link Material#ordinal()} so counting a block is an array increment.
+ * The materials that have been counted are tracked separately so that iterating only visits those.
+ * A histogram that is going to be kept for a long time can be {@link #trim() trimmed} so it only uses memory
+ * for the materials it has counted.
+ * Not thread safe.
+ * @author tastybento
+ *
+ */
+public class MaterialHistogram {
+
+    private static final Material[] MATERIALS = Material.values();
+
+    // Counts indexed by ordinal, or null if trimmed
+    private int[] counts = new int[MATERIALS.length];
+    // Ordinals of the materials that have a count, in the order they were first counted
+    private int[] ordinals = new int[16];
+    // Counts in the same order as ordinals, only used when trimmed
+    private int[] trimmed;
+    private int distinct;
+    private long size;
+
+    /**
+     * Count one block
+     * @param material - material
+     */
+    public void add(Material material) {
+        add(material.ordinal(), 1);
+    }
+
+    /**
+     * Count a number of blocks
+     * @param material - material
+     * @param amount - number of blocks. Zero or less does nothing.
+     */
+    public void add(Material material, int amount) {
+        add(material.ordinal(), amount);
+    }
+
+    /**
+     * Count a number of blocks
+     * @param ordinal - ordinal of the material
+     * @param amount - number of blocks. Zero or less does nothing.
+     */
+    public void add(int ordinal, int amount) {
+        if (amount <= 0) {
+            return;
+        }
+        if (counts == null) {
+            expand();
+        }
+        if (counts[ordinal] == 0) {
+            if (distinct == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, distinct * 2);
+            }
+            ordinals[distinct++] = ordinal;
+        }
+        counts[ordinal] += amount;
+        size += amount;
+    }
+
+    /**
+     * Add all the counts from another histogram to this one
+     * @param other - other histogram
+     */
+    public void addAll(MaterialHistogram other) {
+        for (int i = 0; i < other.distinct; i++) {
+            add(other.ordinals[i], other.countAt(i));
+        }
+    }
+
+    /**
+     * Release the memory used for materials that have not been counted.
+     * The histogram can still be used as normal afterwards, but counting more blocks makes it full size again.
+     */
+    public void trim() {
+        if (counts == null) {
+            return;
+        }
+        trimmed = new int[distinct];
+        for (int i = 0; i < distinct; i++) {
+            trimmed[i] = counts[ordinals[i]];
+        }
+        ordinals = Arrays.copyOf(ordinals, distinct);
+        counts = null;
+    }
+
+    private void expand() {
+        counts = new int[MATERIALS.length];
+        for (int i = 0; i < distinct; i++) {
+            counts[ordinals[i]] = trimmed[i];
+        }
+        trimmed = null;
+        if (ordinals.length == 0) {
+            ordinals = new int[16];
+        }
+    }
+
+    /**
+     * @param i - index into ordinals
+     * @return count of the material at that index
+     */
+    private int countAt(int i) {
+        return counts == null ? trimmed[i] : counts[ordinals[i]];
+    }
+
+    /**
+     * @param material - material
+     * @return number of blocks of this material
+     */
+    public int count(Material material) {
+        if (counts == null) {
+            for (int i = 0; i < distinct; i++) {
+                if (ordinals[i] == material.ordinal()) {
+                    return trimmed[i];
+                }
+            }
+            return 0;
+        }
+        return counts[material.ordinal()];
+    }
+
+    /**
+     * @return total number of blocks counted
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return true if nothing has been counted
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return number of different materials counted
+     */
+    public int distinct() {
+        return distinct;
+    }
+
+    /**
+     * Run an action for every material that has been counted, in the order they were first counted
+     * @param action - action that accepts the material and its count
+     */
+    public void forEach(ObjIntConsumer<Material> action) {
+        for (int i = 0; i < distinct; i++) {
+            action.accept(MATERIALS[ordinals[i]], countAt(i));
+        }
+    }
+
+    /**
+     * @return list of materials and their counts, highest count first
+     */
+    public List<Pair<Material, Integer>> highestCountFirst() {
+        List<Pair<Material, Integer>> list = new ArrayList<>(distinct);
+        forEach((material, count) -> list.add(new Pair<>(material, count)));
+        list.sort((a, b) -> Integer.compare(b.getValue(), a.getValue()));
+        return list;
+    }
+
+    /**
+     * @return a new map of the materials and their counts
+     */
+    public Map<Material, Integer> toMap() {
+        Map<Material, Integer> map = new EnumMap<>(Material.class);
+        forEach(map::put);
+        return map;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return toMap().toString();
+    }
+
+}
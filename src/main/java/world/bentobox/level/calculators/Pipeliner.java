@@ -1,30 +1,86 @@
 package world.bentobox.level.calculators;
 
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
 
 import org.bukkit.Bukkit;
+import org.bukkit.World;
 import org.bukkit.scheduler.BukkitTask;
 
 import world.bentobox.bentobox.BentoBox;
 import world.bentobox.bentobox.database.objects.Island;
+import world.bentobox.bentobox.util.Util;
 import world.bentobox.level.Level;
-import world.bentobox.level.calculators.Results.Result;
 
 /**
- * A pipeliner that will process one island at a time
+ * A pipeliner that runs island level calculations in a number of slots, set by concurrent-island-calcs.
+ * A slot takes the next island from the queue as soon as its calculation completes.
  * @author tastybento
  *
  */
 public class Pipeliner {
 
+    /**
+     * How urgent a calculation is. Calculations are taken from the queue in order of the time they were queued
+     * plus the delay of their priority, so a waiting calculation moves ahead of newer, more urgent ones in the end.
+     */
+    public enum Priority {
+        /**
+         * A player or admin has asked for the level and is waiting for it
+         */
+        INTERACTIVE(0),
+        /**
+         * Logins, automatic corrections and API calls
+         */
+        BACKGROUND(60000),
+        /**
+         * Admin jobs that recalculate many islands
+         */
+        BULK(300000);
+
+        private final long delay;
+
+        Priority(long delay) {
+            this.delay = delay;
+        }
+    }
+
+    /**
+     * A calculation in the queue
+     * @param calc - calculation
+     * @param key - when the calculation is due to run, in milliseconds. Lowest runs first.
+     * @param seq - order the calculation was queued in, to break ties
+     * @param time - when the calculation was queued
+     */
+    private record Queued(IslandLevelCalculator calc, long key, long seq, long time) {}
+
     private static final int START_DURATION = 10; // 10 seconds
-    private final Queue<IslandLevelCalculator> toProcessQueue;
+    private static final long WATCHDOG_PERIOD = 200L; // 10 seconds
+    private static final Comparator<Queued> QUEUE_ORDER = Comparator.comparingLong(Queued::key).thenComparingLong(Queued::seq);
+    private final PriorityBlockingQueue<Queued> toProcessQueue;
+    // Only used on the main thread
     private final Map<IslandLevelCalculator, Long> inProcessQueue;
-    private final BukkitTask task;
+    // Size of inProcessQueue, so it can be read from any thread
+    private final AtomicInteger inProcess = new AtomicInteger();
+    // Level calculations that are queued or running, by island unique id
+    private final Map<String, IslandLevelCalculator> pending = new ConcurrentHashMap<>();
+    private final AtomicLong seq = new AtomicLong();
+    private final AtomicBoolean wakeScheduled = new AtomicBoolean();
+    private volatile boolean stopped;
+    // Times out calculations that stop making progress, started with the first calculation
+    private BukkitTask watchdog;
+    private final ForkJoinPool scanPool;
+    private final SnapshotScheduler snapshotScheduler;
     private final Level addon;
     private long time;
     private long count;
@@ -34,37 +90,102 @@ public class Pipeliner {
      */
     public Pipeliner(Level addon) {
         this.addon = addon;
-        toProcessQueue = new ConcurrentLinkedQueue<>();
+        toProcessQueue = new PriorityBlockingQueue<>(11, QUEUE_ORDER);
         inProcessQueue = new HashMap<>();
-        // Loop continuously - check every tick if there is an island to scan
-        task = Bukkit.getScheduler().runTaskTimer(BentoBox.getInstance(), () -> {
-            if (!BentoBox.getInstance().isEnabled()) {
-                cancel();
-                return;
-            }
-            // Complete the current to Process queue first
-            if (!inProcessQueue.isEmpty() || toProcessQueue.isEmpty()) return;
-            for (int j = 0; j < addon.getSettings().getConcurrentIslandCalcs() && !toProcessQueue.isEmpty(); j++) {
-                IslandLevelCalculator iD = toProcessQueue.poll();
-                // Ignore deleted or unonwed islands
-                if (!iD.getIsland().isDeleted() && !iD.getIsland().isUnowned()) {
-                    inProcessQueue.put(iD, System.currentTimeMillis());
-                    // Start the scanning of a island with the first chunk
-                    scanIsland(iD);
+        int scanThreads = addon.getSettings().getScanThreads();
+        scanPool = new ForkJoinPool(scanThreads < 1 ? Math.max(1, Runtime.getRuntime().availableProcessors() / 2) : scanThreads);
+        snapshotScheduler = new SnapshotScheduler(addon);
+    }
+
+    /**
+     * Fill any free slots on the next tick. Can be called from any thread.
+     */
+    private void wake() {
+        if (!stopped && wakeScheduled.compareAndSet(false, true)) {
+            Bukkit.getScheduler().runTask(BentoBox.getInstance(), () -> {
+                wakeScheduled.set(false);
+                fillSlots();
+            });
+        }
+    }
+
+    /**
+     * Start islands from the queue until all the slots are in use
+     */
+    private void fillSlots() {
+        if (!BentoBox.getInstance().isEnabled()) {
+            stopped = true;
+        }
+        while (!stopped && inProcessQueue.size() < addon.getSettings().getConcurrentIslandCalcs() && !toProcessQueue.isEmpty()) {
+            Queued q = toProcessQueue.poll();
+            IslandLevelCalculator iD = q.calc();
+            // Ignore deleted or unonwed islands
+            if (iD.getIsland().isDeleted() || iD.getIsland().isUnowned()) {
+                iD.getR().complete(null);
+            } else {
+                long start = System.currentTimeMillis();
+                addon.getMetrics().getQueueWait().record((start - q.time()) / 1000D);
+                inProcessQueue.put(iD, start);
+                inProcess.set(inProcessQueue.size());
+                if (watchdog == null) {
+                    watchdog = Bukkit.getScheduler().runTaskTimer(BentoBox.getInstance(), this::checkTimeouts, WATCHDOG_PERIOD, WATCHDOG_PERIOD);
                 }
+                // Free the slot when the calculation completes, however it ends
+                iD.getR().whenComplete((r, ex) -> {
+                    // Once stopped, the plugin may be disabled so no tasks can be scheduled, and the slots are emptied anyway
+                    if (!stopped) {
+                        Bukkit.getScheduler().runTask(BentoBox.getInstance(), () -> {
+                            inProcessQueue.remove(iD);
+                            inProcess.set(inProcessQueue.size());
+                            record(iD, r, System.currentTimeMillis() - start);
+                            fillSlots();
+                        });
+                    }
+                });
+                // Start the scanning of a island with the first chunk
+                scanIsland(iD);
             }
-        }, 1L, 10L);
+        }
     }
 
-    private void cancel() {
-        task.cancel();
+    /**
+     * Time out calculations that have been running for longer than the calculation timeout.
+     * Calculations check the timeout themselves after each batch of chunks, but one that stops making progress,
+     * e.g., because a chunk load never completes, would otherwise keep its slot forever.
+     */
+    private void checkTimeouts() {
+        long limit = System.currentTimeMillis() - addon.getSettings().getCalculationTimeout() * 60000L;
+        for (Map.Entry<IslandLevelCalculator, Long> en : List.copyOf(inProcessQueue.entrySet())) {
+            if (en.getValue() < limit) {
+                en.getKey().timeOut();
+            }
+        }
     }
 
     /**
-     * @return number of islands currently in the queue or in process
+     * Record the statistics of a calculation that has completed
+     * @param iD - calculation
+     * @param r - results, may be null
+     * @param millis - how long it ran
+     */
+    private void record(IslandLevelCalculator iD, Results r, long millis) {
+        if (r == null) {
+            return;
+        }
+        CalculationMetrics metrics = addon.getMetrics();
+        metrics.recordResult(r.getState());
+        if (r.getState().equals(Results.Result.AVAILABLE)) {
+            setTime(millis);
+            metrics.getDuration().record(millis / 1000D);
+            metrics.recordThroughput(iD.getChunksScanned(), r.getBlockCount(), millis / 1000D);
+        }
+    }
+
+    /**
+     * @return number of islands currently in the queue or in process. Can be called from any thread.
      */
     public int getIslandsInQueue() {
-        return inProcessQueue.size() + toProcessQueue.size();
+        return inProcess.get() + toProcessQueue.size();
     }
 
     /**
@@ -72,30 +193,153 @@ public class Pipeliner {
      * @param iD
      */
     private void scanIsland(IslandLevelCalculator iD) {
-        if (iD.getIsland().isDeleted() || iD.getIsland().isUnowned() || task.isCancelled()) {
+        if (iD.getIsland().isDeleted() || iD.getIsland().isUnowned() || stopped) {
             // Island is deleted, so finish early with nothing
-            inProcessQueue.remove(iD);
             iD.getR().complete(null);
             return;
         }
-        iD.scanIsland(this);
+        if (addon.getChunkCache() != null) {
+            // Stored chunk counts are read first so that those chunks do not need to be loaded
+            addon.getChunkCache().load(iD.getIsland()).thenRun(() -> {
+                if (!iD.isCancelled()) {
+                    iD.scanIsland(this);
+                }
+            });
+        } else {
+            iD.scanIsland(this);
+        }
     }
 
 
+    /**
+     * Cancel the calculations of an island, queued or running. Must be called on the main thread.
+     * Their results are completed with a {@link Results.Result#CANCELLED} state.
+     * @param island - island
+     * @return number of calculations cancelled
+     */
+    public int cancel(Island island) {
+        return cancel(i -> i.getUniqueId().equals(island.getUniqueId()));
+    }
+
+    /**
+     * Cancel the calculations of all the islands in a game mode, queued or running. Must be called on the main thread.
+     * @param world - game mode world
+     * @return number of calculations cancelled
+     */
+    public int cancel(World world) {
+        return cancel(i -> Util.sameWorld(i.getWorld(), world));
+    }
+
+    /**
+     * Cancel all calculations, queued or running. Must be called on the main thread.
+     * @return number of calculations cancelled
+     */
+    public int cancelAll() {
+        return cancel(i -> true);
+    }
+
+    private int cancel(Predicate<Island> filter) {
+        int n = 0;
+        for (Queued q : toProcessQueue.toArray(new Queued[0])) {
+            if (filter.test(q.calc().getIsland()) && toProcessQueue.remove(q)) {
+                q.calc().cancel();
+                n++;
+            }
+        }
+        // Running calculations stop at the next chunk and free their slot when the results complete
+        for (IslandLevelCalculator calc : List.copyOf(inProcessQueue.keySet())) {
+            if (filter.test(calc.getIsland()) && !calc.isCancelled()) {
+                calc.cancel();
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Get where an island is in the queue
+     * @param island - island
+     * @return 0 if the island is being calculated, the number of calculations that will run before it plus one
+     * if it is queued, or -1 if there is no level calculation for the island
+     */
+    public int getQueuePosition(Island island) {
+        IslandLevelCalculator calc = pending.get(island.getUniqueId());
+        if (calc == null) {
+            return -1;
+        }
+        Queued q = find(calc);
+        if (q == null) {
+            return inProcessQueue.containsKey(calc) ? 0 : -1;
+        }
+        return 1 + (int)toProcessQueue.stream().filter(o -> QUEUE_ORDER.compare(o, q) < 0).count();
+    }
+
+    /**
+     * Get how long it should be until the level calculation of an island is done
+     * @param island - island
+     * @return estimated wait in seconds
+     */
+    public int getEstimatedWait(Island island) {
+        int position = getQueuePosition(island);
+        if (position <= 0) {
+            return getTime();
+        }
+        // Everything running and ahead in the queue goes through the slots first
+        int ahead = inProcessQueue.size() + position - 1;
+        return getTime() * (ahead / addon.getSettings().getConcurrentIslandCalcs() + 1);
+    }
+
+    private Queued find(IslandLevelCalculator calc) {
+        return toProcessQueue.stream().filter(q -> q.calc() == calc).findFirst().orElse(null);
+    }
+
     /**
      * Adds an island to the scanning queue but only if the island is not already in the queue
      * @param island  - the island to scan
-     * @return CompletableFuture of the results. Results will be null if the island is already in the queue
+     * @return CompletableFuture of the results. If the island is already queued or being calculated,
+     * this is the future of that calculation, so every caller gets the same results.
      */
     public CompletableFuture<Results> addIsland(Island island) {
-        // Check if queue already contains island and it's not an island zero calculation
-        if (inProcessQueue.keySet().parallelStream().filter(IslandLevelCalculator::isNotZeroIsland)
-                .map(IslandLevelCalculator::getIsland).anyMatch(island::equals)
-                || toProcessQueue.parallelStream().filter(IslandLevelCalculator::isNotZeroIsland)
-                .map(IslandLevelCalculator::getIsland).anyMatch(island::equals)) {
-            return CompletableFuture.completedFuture(new Results(Result.IN_PROGRESS));
+        return addIsland(island, Priority.BACKGROUND);
+    }
+
+    /**
+     * Adds an island to the scanning queue but only if the island is not already in the queue.
+     * If it is already queued with a lower priority, it is moved up.
+     * @param island  - the island to scan
+     * @param priority - how urgent the calculation is
+     * @return CompletableFuture of the results. If the island is already queued or being calculated,
+     * this is the future of that calculation, so every caller gets the same results.
+     */
+    public CompletableFuture<Results> addIsland(Island island, Priority priority) {
+        String id = island.getUniqueId();
+        // Only level calculations are indexed. Island zero calculations are always queued.
+        boolean[] added = new boolean[1];
+        IslandLevelCalculator calc = pending.computeIfAbsent(id, k -> {
+            added[0] = true;
+            return new IslandLevelCalculator(addon, island, new CompletableFuture<>(), false);
+        });
+        if (added[0]) {
+            calc.getR().whenComplete((v, ex) -> pending.remove(id, calc));
+            addToQueue(calc, priority);
+        } else {
+            promote(calc, priority);
+        }
+        return calc.getR();
+    }
+
+    /**
+     * Move a queued calculation up if the new priority would run it sooner
+     * @param calc - calculation
+     * @param priority - new priority
+     */
+    private void promote(IslandLevelCalculator calc, Priority priority) {
+        Queued q = find(calc);
+        long key = System.currentTimeMillis() + priority.delay;
+        // If it cannot be removed, it has just started running
+        if (q != null && key < q.key() && toProcessQueue.remove(q)) {
+            toProcessQueue.add(new Queued(calc, key, q.seq(), q.time()));
         }
-        return addToQueue(island, false);
     }
 
     /**
@@ -104,22 +348,24 @@ public class Pipeliner {
      * @return CompletableFuture of the results
      */
     public CompletableFuture<Results> zeroIsland(Island island) {
-        return addToQueue(island, true);
-    }
-
-    private CompletableFuture<Results> addToQueue(Island island, boolean zeroing) {
         CompletableFuture<Results> r = new CompletableFuture<>();
-        toProcessQueue.add(new IslandLevelCalculator(addon, island, r, zeroing));
-        count++;
+        // The island has just been made or reset, so its owner is there
+        addToQueue(new IslandLevelCalculator(addon, island, r, true), Priority.INTERACTIVE);
         return r;
     }
 
+    private void addToQueue(IslandLevelCalculator calc, Priority priority) {
+        long now = System.currentTimeMillis();
+        toProcessQueue.add(new Queued(calc, now + priority.delay, seq.getAndIncrement(), now));
+        wake();
+    }
+
     /**
      * Get the average time it takes to run a level check
-     * @return the average time in seconds
+     * @return the average time in seconds, rounded up
      */
     public int getTime() {
-        return time == 0 || count == 0 ? START_DURATION : (int)((double)time/count/1000);
+        return count == 0 ? START_DURATION : (int)Math.ceil((double)time/count/1000);
     }
 
     /**
@@ -127,8 +373,9 @@ public class Pipeliner {
      * @param time the time to set
      */
     public void setTime(long time) {
-        // Running average
+        // Running average of the calculations that have completed
         this.time += time;
+        this.count++;
     }
 
     /**
@@ -136,9 +383,19 @@ public class Pipeliner {
      */
     public void stop() {
         addon.log("Stopping Level queue");
-        task.cancel();
+        stopped = true;
+        if (watchdog != null) {
+            watchdog.cancel();
+            watchdog = null;
+        }
+        // Complete everyone's results and let go of any chunks that are held
+        cancelAll();
+        snapshotScheduler.stop();
+        scanPool.shutdownNow();
         this.inProcessQueue.clear();
+        inProcess.set(0);
         this.toProcessQueue.clear();
+        this.pending.clear();
     }
 
     /**
@@ -149,10 +406,24 @@ public class Pipeliner {
     }
 
     /**
-     * @return the task
+     * @return the thread pool that scans chunk snapshots
+     */
+    public ForkJoinPool getScanPool() {
+        return scanPool;
+    }
+
+    /**
+     * @return the scheduler for the main thread work of calculations
+     */
+    SnapshotScheduler getSnapshotScheduler() {
+        return snapshotScheduler;
+    }
+
+    /**
+     * @return true if the queue has been stopped
      */
-    protected BukkitTask getTask() {
-        return task;
+    protected boolean isStopped() {
+        return stopped;
     }
 
 
@@ -1,6 +1,7 @@
 package world.bentobox.level.calculators;
 
 import java.util.List;
+import java.util.function.Supplier;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -8,6 +9,7 @@ import org.bukkit.Material;
 
 import com.google.common.collect.HashMultiset;
 import com.google.common.collect.Multiset;
+import com.google.common.collect.Multisets;
 
 public class Results {
     public enum Result {
@@ -22,13 +24,23 @@ public class Results {
         /**
          * Result if calculation timed out
          */
-        TIMEOUT
-    }
-    List<String> report;
-    final Multiset<Material> mdCount = HashMultiset.create();
-    final Multiset<Material> uwCount = HashMultiset.create();
-    final Multiset<Material> ncCount = HashMultiset.create();
-    final Multiset<Material> ofCount = HashMultiset.create();
+        TIMEOUT,
+        /**
+         * Result if the calculation was cancelled, e.g., because the addon is being disabled
+         */
+        CANCELLED,
+        /**
+         * Result if something went wrong during the calculation
+         */
+        ERROR
+    }
+    // Builds the report the first time it is asked for
+    private Supplier<List<String>> reportBuilder;
+    private List<String> report;
+    final MaterialHistogram mdCount = new MaterialHistogram();
+    final MaterialHistogram uwCount = new MaterialHistogram();
+    final MaterialHistogram ncCount = new MaterialHistogram();
+    final MaterialHistogram ofCount = new MaterialHistogram();
     // AtomicLong and AtomicInteger must be used because they are changed by multiple concurrent threads
     AtomicLong rawBlockCount = new AtomicLong(0);
     AtomicLong underWaterBlockCount = new AtomicLong(0);
@@ -37,6 +49,8 @@ public class Results {
     AtomicLong pointsToNextLevel = new AtomicLong(0);
     AtomicLong initialLevel = new AtomicLong(0);
     final Result state;
+    // When the calculation was set up. Block changes after this may or may not be in the counts.
+    final long created = System.currentTimeMillis();
 
     public Results(Result state) {
         this.state = state;
@@ -60,11 +74,24 @@ public class Results {
     }
 
     /**
-     * @return the report
+     * Get the report. It is built from the block counts the first time it is asked for, on the calling thread.
+     * @return the report, or null if there is none
      */
-    public List<String> getReport() {
+    public synchronized List<String> getReport() {
+        if (report == null && reportBuilder != null) {
+            report = reportBuilder.get();
+            reportBuilder = null;
+        }
         return report;
     }
+
+    /**
+     * @param reportBuilder - builds the report when it is needed
+     */
+    synchronized void setReport(Supplier<List<String>> reportBuilder) {
+        this.reportBuilder = reportBuilder;
+        this.report = null;
+    }
     /**
      * Set level
      * @param level - level
@@ -78,6 +105,12 @@ public class Results {
     public long getLevel() {
         return level.get();
     }
+    /**
+     * @return the number of blocks that were counted, above and below sea level
+     */
+    public long getBlockCount() {
+        return mdCount.size() + uwCount.size();
+    }
     /**
      * @return the pointsToNextLevel
      */
@@ -112,17 +145,41 @@ public class Results {
                 + ", pointsToNextLevel=" + pointsToNextLevel + ", initialLevel=" + initialLevel + "]";
     }
     /**
-     * @return the mdCount
+     * @return a read-only copy of the mdCount
+     * @deprecated the counts are no longer kept in a multiset, so this makes a copy each time it is called.
+     * Use {@link #getMdHistogram()}.
      */
+    @Deprecated
     public Multiset<Material> getMdCount() {
+        return toMultiset(mdCount);
+    }
+    /**
+     * @return a read-only copy of the uwCount
+     * @deprecated the counts are no longer kept in a multiset, so this makes a copy each time it is called.
+     * Use {@link #getUwHistogram()}.
+     */
+    @Deprecated
+    public Multiset<Material> getUwCount() {
+        return toMultiset(uwCount);
+    }
+    /**
+     * @return the mdCount
+     */
+    public MaterialHistogram getMdHistogram() {
         return mdCount;
     }
     /**
      * @return the uwCount
      */
-    public Multiset<Material> getUwCount() {
+    public MaterialHistogram getUwHistogram() {
         return uwCount;
     }
+
+    private static Multiset<Material> toMultiset(MaterialHistogram histogram) {
+        Multiset<Material> multiset = HashMultiset.create(histogram.distinct());
+        histogram.forEach(multiset::add);
+        return Multisets.unmodifiableMultiset(multiset);
+    }
     /**
      * @return the state
      */
@@ -0,0 +1,101 @@
+package world.bentobox.level.calculators;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.bukkit.Location;
+import org.bukkit.inventory.ItemStack;
+
+import world.bentobox.level.config.BlockTable;
+
+/**
+ * Block counts collected by one scanning thread for a run of chunks in one world.
+ * Blocks without a limit are valued straight away. Blocks with a limit are only counted in the
+ * histograms and recorded in scan order, because whether they score depends on how much of the
+ * island's limit is left. {@link IslandLevelCalculator} replays them when the tally is merged into the results,
+ * so merging tallies in chunk order gives exactly the same results as scanning the chunks one after another.
+ * Not thread safe.
+ * @author tastybento
+ *
+ */
+class ScanTally {
+
+    final BlockTable table;
+    final MaterialHistogram mdCount = new MaterialHistogram();
+    final MaterialHistogram uwCount = new MaterialHistogram();
+    final MaterialHistogram ncCount = new MaterialHistogram();
+    long rawBlockCount;
+    long underWaterBlockCount;
+    // Limited blocks in scan order as pairs of (ordinal << 1 | below sea level, amount)
+    int[] limited = new int[0];
+    int limitedSize;
+    final List<Location> stackedBlocks = new ArrayList<>();
+    // Contents of the containers in the chunk, copied on the main thread and counted on the scan thread
+    final List<ItemStack> chestItems = new ArrayList<>();
+    // True if the chunk has containers, even empty ones
+    boolean containers;
+    // True if the chunk has blocks stacked by RoseStacker, whose stack sizes can change without a block changing
+    boolean stacks;
+
+    /**
+     * @param table - block table for the world being scanned
+     */
+    ScanTally(BlockTable table) {
+        this.table = table;
+    }
+
+    /**
+     * Count blocks
+     * @param entry - block table entry for the material
+     * @param ordinal - material ordinal
+     * @param belowSeaLevel - true if below sea level
+     * @param amount - number of blocks
+     */
+    void add(long entry, int ordinal, boolean belowSeaLevel, int amount) {
+        if (amount <= 0) {
+            return;
+        }
+        if (belowSeaLevel) {
+            uwCount.add(ordinal, amount);
+        } else {
+            mdCount.add(ordinal, amount);
+        }
+        if (BlockTable.hasFlag(entry, BlockTable.LIMITED)) {
+            addLimited(ordinal << 1 | (belowSeaLevel ? 1 : 0), amount);
+        } else if (BlockTable.hasFlag(entry, BlockTable.NOT_CONFIGURED)) {
+            ncCount.add(ordinal, amount);
+        } else if (belowSeaLevel) {
+            underWaterBlockCount += (long)BlockTable.getValue(entry) * amount;
+        } else {
+            rawBlockCount += (long)BlockTable.getValue(entry) * amount;
+        }
+    }
+
+    private void addLimited(int key, int amount) {
+        // Runs of the same block are kept as one record
+        if (limitedSize > 0 && limited[limitedSize - 2] == key && limited[limitedSize - 1] <= Integer.MAX_VALUE - amount) {
+            limited[limitedSize - 1] += amount;
+            return;
+        }
+        if (limitedSize == limited.length) {
+            limited = Arrays.copyOf(limited, Math.max(16, limited.length * 2));
+        }
+        limited[limitedSize++] = key;
+        limited[limitedSize++] = amount;
+    }
+
+    /**
+     * Release memory that is not needed once the tally is complete, so that it can be cached
+     */
+    void trim() {
+        mdCount.trim();
+        uwCount.trim();
+        ncCount.trim();
+        limited = Arrays.copyOf(limited, limitedSize);
+        if (stackedBlocks instanceof ArrayList<Location> list) {
+            list.trimToSize();
+        }
+    }
+
+}
@@ -0,0 +1,113 @@
+package world.bentobox.level.calculators;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+
+import world.bentobox.level.Level;
+
+/**
+ * Runs the main thread work of level calculations, mainly taking chunk snapshots, within a time budget each tick.
+ * The budget is shared by all the calculations that are running. Work that does not fit in a tick is carried over
+ * to the next one. How long the work takes is measured and used to work out how many chunks a calculation
+ * should ask for at once.
+ * Must only be used on the main thread.
+ * @author tastybento
+ *
+ */
+class SnapshotScheduler {
+
+    private static final long NANOS_PER_MS = 1_000_000L;
+    private static final int MAX_BATCH = 100;
+    // A batch of chunks should take about this many ticks to snapshot
+    private static final int BATCH_TICKS = 10;
+    // How quickly the average cost follows changes. Each new measurement has a weight of 1 / SMOOTHING.
+    private static final int SMOOTHING = 16;
+
+    private final Level addon;
+    private final Queue<Runnable> jobs = new ArrayDeque<>();
+    private final BukkitTask task;
+    private boolean stopped;
+    // Average time in nanoseconds that a job takes. Starts at a guess of 1 ms.
+    private double averageCost = NANOS_PER_MS;
+
+    /**
+     * @param addon - Level addon
+     */
+    SnapshotScheduler(Level addon) {
+        this.addon = addon;
+        task = Bukkit.getScheduler().runTaskTimer(addon.getPlugin(), this::tick, 1L, 1L);
+    }
+
+    /**
+     * Queue a job to run on the main thread when there is time for it.
+     * Once stopped, the job is run straight away because nothing would run it later.
+     * @param <T> result type
+     * @param job - job to run
+     * @return future result of the job, completed on the main thread
+     */
+    <T> CompletableFuture<T> submit(Supplier<T> job) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Runnable run = () -> {
+            try {
+                result.complete(job.get());
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        };
+        if (stopped) {
+            run.run();
+        } else {
+            jobs.add(run);
+        }
+        return result;
+    }
+
+    /**
+     * Run jobs until the next one is expected to go over the budget. At least one job is run.
+     */
+    private void tick() {
+        long budget = addon.getSettings().getSnapshotTickBudget() * NANOS_PER_MS;
+        long start = System.nanoTime();
+        long now = start;
+        Runnable job;
+        while ((job = jobs.poll()) != null) {
+            job.run();
+            long end = System.nanoTime();
+            averageCost += (end - now - averageCost) / SMOOTHING;
+            now = end;
+            if (now - start + averageCost > budget) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Get how many chunks a calculation should ask for at once, based on how long snapshots are taking
+     * and how many calculations share the budget
+     * @param dimensions - number of dimensions that are scanned for each chunk
+     * @return number of chunks, between 1 and 100
+     */
+    int getBatchSize(int dimensions) {
+        double perTick = addon.getSettings().getSnapshotTickBudget() * NANOS_PER_MS / Math.max(1D, averageCost);
+        double batch = perTick * BATCH_TICKS / addon.getSettings().getConcurrentIslandCalcs() / Math.max(1, dimensions);
+        return (int)Math.max(1, Math.min(MAX_BATCH, batch));
+    }
+
+    /**
+     * Stop. Jobs that are waiting are run now, so they can let go of their chunks, and jobs submitted later
+     * are run as they are submitted. Their calculations should have been cancelled first so that they do no work.
+     */
+    void stop() {
+        stopped = true;
+        task.cancel();
+        Runnable job;
+        while ((job = jobs.poll()) != null) {
+            job.run();
+        }
+    }
+}
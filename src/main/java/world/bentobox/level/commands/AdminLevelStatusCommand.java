@@ -1,11 +1,15 @@
 package world.bentobox.level.commands;
 
 import java.util.List;
+import java.util.Locale;
 
 import world.bentobox.bentobox.api.commands.CompositeCommand;
 import world.bentobox.bentobox.api.localization.TextVariables;
 import world.bentobox.bentobox.api.user.User;
 import world.bentobox.level.Level;
+import world.bentobox.level.calculators.BulkRecalculator.Progress;
+import world.bentobox.level.calculators.CalculationMetrics;
+import world.bentobox.level.calculators.CalculationMetrics.Histogram;
 
 public class AdminLevelStatusCommand extends CompositeCommand {
 
@@ -26,6 +30,33 @@ public class AdminLevelStatusCommand extends CompositeCommand {
     @Override
     public boolean execute(User user, String label, List<String> args) {
         user.sendMessage("admin.levelstatus.islands-in-queue", TextVariables.NUMBER, String.valueOf(addon.getPipeliner().getIslandsInQueue()));
+        // Progress of a recalculation of all islands
+        Progress progress = addon.getBulkRecalculator().getProgress(getWorld());
+        if (progress != null) {
+            user.sendMessage("admin.levelstatus.recalc-progress", TextVariables.NUMBER, String.valueOf(progress.done()),
+                    "[total]", String.valueOf(progress.total()),
+                    "[percent]", String.valueOf(progress.total() == 0 ? 100 : progress.done() * 100L / progress.total()),
+                    "[minutes]", String.valueOf((progress.eta() + 59) / 60));
+        }
+        // Statistics
+        CalculationMetrics metrics = addon.getMetrics();
+        user.sendMessage("admin.levelstatus.calculations", TextVariables.NUMBER, String.valueOf(metrics.getCompleted()),
+                "[timeouts]", String.valueOf(metrics.getTimeouts()),
+                "[cancelled]", String.valueOf(metrics.getCancelled()),
+                "[errors]", String.valueOf(metrics.getErrors()));
+        for (Histogram h : metrics.getHistograms()) {
+            if (h.getCount() > 0) {
+                user.sendMessage("admin.levelstatus.metric", TextVariables.NAME, h.getName(),
+                        TextVariables.NUMBER, String.valueOf(h.getCount()),
+                        "[p50]", format(h, 50), "[p95]", format(h, 95), "[p99]", format(h, 99));
+            }
+        }
         return true;
     }
+
+    private String format(Histogram h, double percentile) {
+        double value = h.getPercentile(percentile);
+        // Times are shown in milliseconds
+        return h.getName().endsWith("_seconds") ? String.format(Locale.ROOT, "%.1fms", value * 1000) : String.format(Locale.ROOT, "%,.0f", value);
+    }
 }
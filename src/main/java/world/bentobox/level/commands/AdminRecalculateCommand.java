@@ -0,0 +1,66 @@
+package world.bentobox.level.commands;
+
+import java.util.List;
+import java.util.Optional;
+
+import world.bentobox.bentobox.api.commands.CompositeCommand;
+import world.bentobox.bentobox.api.localization.TextVariables;
+import world.bentobox.bentobox.api.user.User;
+import world.bentobox.level.Level;
+
+/**
+ * Recalculates the level of every island in the game mode, or stops a recalculation that is running
+ * @author tastybento
+ *
+ */
+public class AdminRecalculateCommand extends CompositeCommand {
+
+    private static final String STOP = "stop";
+    private final Level addon;
+
+    public AdminRecalculateCommand(Level addon, CompositeCommand parent) {
+        super(parent, "levelrecalc");
+        this.addon = addon;
+    }
+
+    @Override
+    public void setup() {
+        this.setPermission("admin.levelrecalc");
+        this.setOnlyPlayer(false);
+        this.setParametersHelp("admin.levelrecalc.parameters");
+        this.setDescription("admin.levelrecalc.description");
+    }
+
+    @Override
+    public boolean canExecute(User user, String label, List<String> args) {
+        if (args.size() > 1 || (args.size() == 1 && !args.get(0).equalsIgnoreCase(STOP))) {
+            this.showHelp(this, user);
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean execute(User user, String label, List<String> args) {
+        if (!args.isEmpty()) {
+            if (addon.getBulkRecalculator().cancel(getWorld())) {
+                user.sendMessage("admin.levelrecalc.stopped");
+            } else {
+                user.sendMessage("admin.levelrecalc.not-running");
+            }
+            return true;
+        }
+        int islands = addon.getBulkRecalculator().start(getWorld());
+        if (islands < 0) {
+            user.sendMessage("admin.levelrecalc.already-running");
+            return false;
+        }
+        user.sendMessage("admin.levelrecalc.started", TextVariables.NUMBER, String.valueOf(islands));
+        return true;
+    }
+
+    @Override
+    public Optional<List<String>> tabComplete(User user, String alias, List<String> args) {
+        return Optional.of(List.of(STOP));
+    }
+}
@@ -3,12 +3,15 @@ package world.bentobox.level.commands;
 import java.util.List;
 import java.util.UUID;
 
+import org.bukkit.Bukkit;
+
 import world.bentobox.bentobox.BentoBox;
 import world.bentobox.bentobox.api.commands.CompositeCommand;
 import world.bentobox.bentobox.api.localization.TextVariables;
 import world.bentobox.bentobox.api.user.User;
 import world.bentobox.bentobox.database.objects.Island;
 import world.bentobox.level.Level;
+import world.bentobox.level.calculators.Pipeliner.Priority;
 import world.bentobox.level.calculators.Results;
 import world.bentobox.level.calculators.Results.Result;
 
@@ -79,15 +82,10 @@ public class IslandLevelCommand extends CompositeCommand {
             return false;
 
         }
-        int inQueue = addon.getPipeliner().getIslandsInQueue();
         user.sendMessage("island.level.calculating");
-        user.sendMessage("island.level.estimated-wait", TextVariables.NUMBER, String.valueOf(addon.getPipeliner().getTime() * (inQueue + 1)));
-        if (inQueue > 1) {
-            user.sendMessage("island.level.in-queue", TextVariables.NUMBER, String.valueOf(inQueue + 1));
-        }
         // Get the old level
         long oldLevel = addon.getManager().getIslandLevel(getWorld(), playerUUID);
-        addon.getManager().calculateLevel(playerUUID, island).thenAccept(results -> {
+        addon.getManager().calculateLevel(playerUUID, island, Priority.INTERACTIVE).thenAccept(results -> {
             if (results == null) return; // island was deleted or become unowned
             if (results.getState().equals(Result.IN_PROGRESS)) {
                 user.sendMessage("island.level.in-progress");
@@ -95,9 +93,23 @@ public class IslandLevelCommand extends CompositeCommand {
             } else if (results.getState().equals(Result.TIMEOUT)) {
                 user.sendMessage("island.level.time-out");
                 return;
+            } else if (results.getState().equals(Result.CANCELLED)) {
+                user.sendMessage("island.level.cancelled");
+                return;
+            } else if (results.getState().equals(Result.ERROR)) {
+                user.sendMessage("island.level.error");
+                return;
             }
             showResult(user, playerUUID, island, oldLevel, results);
         });
+        // Now that the island is queued, tell the user where it is
+        int position = addon.getPipeliner().getQueuePosition(island);
+        if (position >= 0) {
+            user.sendMessage("island.level.estimated-wait", TextVariables.NUMBER, String.valueOf(addon.getPipeliner().getEstimatedWait(island)));
+        }
+        if (position > 1) {
+            user.sendMessage("island.level.in-queue", TextVariables.NUMBER, String.valueOf(position));
+        }
         return true;
 
     }
@@ -110,7 +122,7 @@ public class IslandLevelCommand extends CompositeCommand {
                 user.sendMessage("island.level.deaths", "[number]", String.valueOf(results.getDeathHandicap()));
             }
             // Send player how many points are required to reach next island level
-            if (results.getPointsToNextLevel() >= 0 && results.getPointsToNextLevel() < 10000) {
+            if (results.getPointsToNextLevel() > 0) {
                 user.sendMessage("island.level.required-points-to-next-level", "[points]", String.valueOf(results.getPointsToNextLevel()));
             }
             // Tell other team members
@@ -120,7 +132,13 @@ public class IslandLevelCommand extends CompositeCommand {
                 .forEach(m -> User.getInstance(m).sendMessage(ISLAND_LEVEL_IS, LEVEL, addon.getManager().getIslandLevelString(getWorld(), playerUUID)));
             }
         } else if (this.addon.getSettings().isLogReportToConsole()) {
-            results.getReport().forEach(BentoBox.getInstance()::log);
+            // Build and log the report off the main thread
+            Bukkit.getScheduler().runTaskAsynchronously(BentoBox.getInstance(), () -> {
+                List<String> report = results.getReport();
+                if (report != null) {
+                    report.forEach(BentoBox.getInstance()::log);
+                }
+            });
         }
 
     }
@@ -7,6 +7,8 @@ import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.bukkit.Bukkit;
 import org.bukkit.Material;
@@ -26,6 +28,10 @@ public class BlockConfig {
     private Map<Material, Integer> blockLimits = new EnumMap<>(Material.class);
     private Map<Material, Integer> blockValues = new EnumMap<>(Material.class);
     private final Map<World, Map<Material, Integer>> worldBlockValues = new HashMap<>();
+    // Compiled lookup tables by world UID. These are built when a world is first asked for and never change afterwards.
+    // Reloading blockconfig.yml makes a new BlockConfig, so calculations in progress keep using the old tables.
+    // Worlds are not used as keys so that unloaded worlds can be freed.
+    private final Map<UUID, BlockTable> tables = new ConcurrentHashMap<>();
     private Level addon;
 
     /**
@@ -135,6 +141,23 @@ public class BlockConfig {
         return worldBlockValues;
     }
 
+    /**
+     * Get the compiled block table for a world. Each dimension is a separate world and
+     * has its own table so that world-specific values apply to nether and end blocks too.
+     * @param world - world
+     * @return block table
+     */
+    public BlockTable getTable(World world) {
+        return tables.computeIfAbsent(world.getUID(), id -> new BlockTable(blockValues, worldBlockValues.get(world), blockLimits));
+    }
+
+    /**
+     * Forget the compiled block tables. Calculations that are running keep the tables they already have.
+     */
+    public void clearTables() {
+        tables.clear();
+    }
+
     /**
      * Get the value of material in world
      * @param world - world
@@ -142,15 +165,11 @@ public class BlockConfig {
      * @return value or null if not configured with a value
      */
     public Integer getValue(World world, Material md) {
-        // Check world settings
-        if (getWorldBlockValues().containsKey(world) && getWorldBlockValues().get(world).containsKey(md)) {
-            return getWorldBlockValues().get(world).get(md);
-        }
-        // Check baseline
-        if (getBlockValues().containsKey(md)) {
-            return getBlockValues().get(md);
+        if (world == null) {
+            return blockValues.get(md);
         }
-        return null;
+        long entry = getTable(world).get(md);
+        return BlockTable.hasFlag(entry, BlockTable.NOT_CONFIGURED) ? null : BlockTable.getValue(entry);
     }
 
 
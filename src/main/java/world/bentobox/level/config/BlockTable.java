@@ -0,0 +1,146 @@
+package world.bentobox.level.config;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.bukkit.Material;
+import org.bukkit.Tag;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Immutable lookup table of block values, limits and traits for one world, indexed by {@link Material#ordinal()}.
+ * Each material has one long entry. The low 32 bits are the value and the high bits are flags, so
+ * a block can be resolved with a single array read. Use the static methods to decode an entry.
+ * @author tastybento
+ *
+ */
+public class BlockTable {
+
+    /**
+     * The material has no value in blockconfig.yml
+     */
+    public static final int NOT_CONFIGURED = 1;
+    /**
+     * The material has a limit in blockconfig.yml
+     */
+    public static final int LIMITED = 1 << 1;
+    /**
+     * The material is a slab and may be doubled
+     */
+    public static final int SLAB = 1 << 2;
+    /**
+     * The material is a container whose contents may be counted
+     */
+    public static final int CONTAINER = 1 << 3;
+    /**
+     * The material may be stacked by a stacker plugin
+     */
+    public static final int STACKER = 1 << 4;
+
+    private static final Material[] MATERIALS = Material.values();
+    private static final Set<Material> CONTAINERS = EnumSet.of(Material.CHEST, Material.CHEST_MINECART, Material.TRAPPED_CHEST,
+            Material.SHULKER_BOX, Material.BLACK_SHULKER_BOX, Material.BLUE_SHULKER_BOX, Material.BROWN_SHULKER_BOX,
+            Material.CYAN_SHULKER_BOX, Material.GRAY_SHULKER_BOX, Material.GREEN_SHULKER_BOX, Material.LIGHT_BLUE_SHULKER_BOX,
+            Material.LIGHT_GRAY_SHULKER_BOX, Material.LIME_SHULKER_BOX, Material.MAGENTA_SHULKER_BOX, Material.ORANGE_SHULKER_BOX,
+            Material.PINK_SHULKER_BOX, Material.PURPLE_SHULKER_BOX, Material.RED_SHULKER_BOX,
+            Material.WHITE_SHULKER_BOX, Material.YELLOW_SHULKER_BOX, Material.COMPOSTER, Material.BARREL, Material.DISPENSER,
+            Material.DROPPER, Material.SMOKER, Material.BLAST_FURNACE);
+    private static final Set<Material> STACKERS = EnumSet.of(Material.CAULDRON, Material.SPAWNER);
+
+    private final long[] entries = new long[MATERIALS.length];
+    private final int[] limits = new int[MATERIALS.length];
+    // Ordinals of the materials that have a limit, in order
+    private final int[] limited;
+
+    /**
+     * Compiles a table
+     * @param blockValues - baseline block values
+     * @param worldValues - values for this world that override the baseline, or null if there are none
+     * @param blockLimits - block limits
+     */
+    BlockTable(Map<Material, Integer> blockValues, @Nullable Map<Material, Integer> worldValues, Map<Material, Integer> blockLimits) {
+        limited = Arrays.stream(MATERIALS).filter(blockLimits::containsKey).mapToInt(Material::ordinal).toArray();
+        for (Material m : MATERIALS) {
+            int flags = 0;
+            Integer value = worldValues != null && worldValues.containsKey(m) ? worldValues.get(m) : blockValues.get(m);
+            if (value == null) {
+                flags |= NOT_CONFIGURED;
+                value = 0;
+            }
+            if (blockLimits.containsKey(m)) {
+                flags |= LIMITED;
+                limits[m.ordinal()] = blockLimits.get(m);
+            }
+            if (m.isBlock() && !m.isLegacy() && Tag.SLABS.isTagged(m)) {
+                flags |= SLAB;
+            }
+            if (CONTAINERS.contains(m)) {
+                flags |= CONTAINER;
+            }
+            if (STACKERS.contains(m)) {
+                flags |= STACKER;
+            }
+            entries[m.ordinal()] = ((long)flags << 32) | (value & 0xFFFFFFFFL);
+        }
+    }
+
+    /**
+     * Get the entry for a material
+     * @param ordinal - material ordinal
+     * @return packed entry. Use the static methods in this class to read it.
+     */
+    public long get(int ordinal) {
+        return entries[ordinal];
+    }
+
+    /**
+     * Get the entry for a material
+     * @param material - material
+     * @return packed entry. Use the static methods in this class to read it.
+     */
+    public long get(Material material) {
+        return entries[material.ordinal()];
+    }
+
+    /**
+     * @return a new array of the block limits indexed by material ordinal. Only entries flagged {@link #LIMITED} are meaningful.
+     */
+    public int[] newLimitBudget() {
+        return Arrays.copyOf(limits, limits.length);
+    }
+
+    /**
+     * @return a new array of the ordinals of the materials that have a limit, in ascending order
+     */
+    public int[] getLimited() {
+        return Arrays.copyOf(limited, limited.length);
+    }
+
+    /**
+     * @param ordinal - material ordinal
+     * @return the block limit of the material. Only meaningful if its entry is flagged {@link #LIMITED}.
+     */
+    public int getLimit(int ordinal) {
+        return limits[ordinal];
+    }
+
+    /**
+     * @param entry - table entry
+     * @return block value, or 0 if not configured
+     */
+    public static int getValue(long entry) {
+        return (int)entry;
+    }
+
+    /**
+     * @param entry - table entry
+     * @param flag - flag to check
+     * @return true if the entry has the flag
+     */
+    public static boolean hasFlag(long entry, int flag) {
+        return ((int)(entry >>> 32) & flag) != 0;
+    }
+
+}
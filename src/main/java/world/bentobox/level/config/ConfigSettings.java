@@ -30,6 +30,44 @@ public class ConfigSettings implements ConfigObject {
     @ConfigEntry(path = "concurrent-island-calcs")
     private int concurrentIslandCalcs = 1;
 
+    @ConfigComment("")
+    @ConfigComment("Number of threads used to scan the chunks of an island")
+    @ConfigComment("The chunks of one island are split between these threads, so large islands are scanned faster.")
+    @ConfigComment("Set to 0 to use half of the CPU cores.")
+    @ConfigEntry(path = "scan-threads")
+    private int scanThreads = 0;
+
+    @ConfigComment("")
+    @ConfigComment("Number of chunks that each island calculation asks the server to load at the same time")
+    @ConfigComment("Chunks are scanned as soon as they load. Higher values make calculations of islands that are")
+    @ConfigComment("not in memory faster, but put more load on the server's chunk system.")
+    @ConfigEntry(path = "concurrent-chunk-loads")
+    private int concurrentChunkLoads = 8;
+
+    @ConfigComment("")
+    @ConfigComment("Milliseconds of each server tick that level calculations may spend taking chunk snapshots.")
+    @ConfigComment("This is shared by all the calculations that are running. Snapshots that do not fit are taken next tick.")
+    @ConfigComment("One snapshot is always taken each tick so that calculations keep going.")
+    @ConfigEntry(path = "snapshot-tick-budget")
+    private int snapshotTickBudget = 10;
+
+    @ConfigComment("")
+    @ConfigComment("Number of islands per minute that an admin recalculation of all islands starts.")
+    @ConfigComment("Players asking for their own level always go first.")
+    @ConfigEntry(path = "bulk-recalc-rate")
+    private int bulkRecalcRate = 120;
+
+    @ConfigComment("")
+    @ConfigComment("Most islands that an admin recalculation of all islands can have queued or calculating at once")
+    @ConfigEntry(path = "bulk-recalc-concurrency")
+    private int bulkRecalcConcurrency = 2;
+
+    @ConfigComment("")
+    @ConfigComment("How often, in minutes, to write level calculation statistics to metrics.prom in the addon's folder.")
+    @ConfigComment("The file is in the Prometheus text format. Set to 0 to not write it.")
+    @ConfigEntry(path = "metrics-dump-interval")
+    private int metricsDumpInterval = 5;
+
     @ConfigComment("")
     @ConfigComment("Island level calculation timeout in minutes.")
     @ConfigComment("If an island takes longer that this time to calculate, then the calculation will abort.")
@@ -37,6 +75,64 @@ public class ConfigSettings implements ConfigObject {
     @ConfigEntry(path = "calculation-timeout")
     private int calculationTimeout = 5;
 
+    @ConfigComment("")
+    @ConfigComment("Skip empty chunk sections when scanning islands.")
+    @ConfigComment("Sections of 16x16x16 blocks that only hold air are counted as air without reading every block.")
+    @ConfigComment("Scanning mostly empty islands is much faster. All the air in a skipped section is counted as AIR, so")
+    @ConfigComment("block counts and reports show less CAVE_AIR and VOID_AIR than a full scan.")
+    @ConfigComment("Off by default so block counts are exactly the same as scanning every block.")
+    @ConfigEntry(path = "skip-empty-sections")
+    private boolean skipEmptySections = false;
+
+    @ConfigComment("")
+    @ConfigComment("Stop scanning each block column at the chunk's height map.")
+    @ConfigComment("Everything above the highest solid or liquid block in a column is counted as air.")
+    @ConfigComment("This is faster, but non-solid blocks such as torches, flowers or signs on the very top")
+    @ConfigComment("of a column will not be counted.")
+    @ConfigEntry(path = "use-height-map")
+    private boolean useHeightMap = false;
+
+    @ConfigComment("")
+    @ConfigComment("Skip chunks that the server has never generated instead of loading them.")
+    @ConfigComment("They are counted as empty. This stops level calculations of large islands, especially")
+    @ConfigComment("in a new nether or end, from generating terrain just to count air.")
+    @ConfigEntry(path = "skip-ungenerated-chunks")
+    private boolean skipUngeneratedChunks = true;
+
+    @ConfigComment("")
+    @ConfigComment("Keep island levels up to date as blocks change.")
+    @ConfigComment("Once an island has been calculated, placing, breaking, exploding, burning, growing or flowing blocks,")
+    @ConfigComment("buckets, dispensers, sponges, bone meal and mobs that change blocks change its level straight away")
+    @ConfigComment("using the same block values and limits as a full calculation.")
+    @ConfigComment("Some changes cannot be tracked, e.g., blocks changed by other plugins, so a full calculation")
+    @ConfigComment("is still run now and again to correct the level.")
+    @ConfigComment("Only islands with a member online are kept up to date. Other islands change level at their next calculation.")
+    @ConfigEntry(path = "incremental-levels")
+    private boolean incrementalLevels = false;
+
+    @ConfigComment("")
+    @ConfigComment("When incremental levels are on, the number of minutes after a full calculation that an island")
+    @ConfigComment("that has changed is queued for another full calculation. Set to 0 to never do this.")
+    @ConfigEntry(path = "reconcile-interval")
+    private int reconcileInterval = 60;
+
+    @ConfigComment("")
+    @ConfigComment("Minutes to remember the block counts of each chunk of a calculated island.")
+    @ConfigComment("Calculating the island again only loads and scans chunks that have changed since then,")
+    @ConfigComment("which is much faster. Chunks with containers or RoseStacker stacks are always scanned again.")
+    @ConfigComment("Only changes that raise a server event make a chunk be scanned again. Blocks changed by WorldEdit,")
+    @ConfigComment("by other plugins, by filling cauldrons or by tilling with a hoe are not seen, so the level can be wrong")
+    @ConfigComment("until the chunk is forgotten, even after a restart if the counts are saved.")
+    @ConfigComment("Set to 0 to not remember chunks. Off by default.")
+    @ConfigEntry(path = "chunk-cache-expiry")
+    private int chunkCacheExpiry = 0;
+
+    @ConfigComment("")
+    @ConfigComment("Save the remembered chunk block counts in the Level data folder so they can be used after a restart.")
+    @ConfigComment("Saved counts are only used if the chunk has not been saved by the server since it was counted.")
+    @ConfigEntry(path = "chunk-cache-store")
+    private boolean chunkCacheStore = true;
+
 
     @ConfigComment("")
     @ConfigComment("Zero island levels on new island or island reset")
@@ -338,6 +434,106 @@ public class ConfigSettings implements ConfigObject {
     }
 
 
+    /**
+     * @return the number of scan threads, or 0 or less to use half of the CPU cores
+     */
+    public int getScanThreads() {
+        return scanThreads;
+    }
+
+
+    /**
+     * @param scanThreads the scanThreads to set
+     */
+    public void setScanThreads(int scanThreads) {
+        this.scanThreads = scanThreads;
+    }
+
+
+    /**
+     * @return the concurrentChunkLoads
+     */
+    public int getConcurrentChunkLoads() {
+        if (concurrentChunkLoads < 1) concurrentChunkLoads = 1;
+        return concurrentChunkLoads;
+    }
+
+
+    /**
+     * @param concurrentChunkLoads the concurrentChunkLoads to set
+     */
+    public void setConcurrentChunkLoads(int concurrentChunkLoads) {
+        this.concurrentChunkLoads = concurrentChunkLoads;
+    }
+
+
+    /**
+     * @return the snapshotTickBudget
+     */
+    public int getSnapshotTickBudget() {
+        if (snapshotTickBudget < 1) snapshotTickBudget = 1;
+        return snapshotTickBudget;
+    }
+
+
+    /**
+     * @param snapshotTickBudget the snapshotTickBudget to set
+     */
+    public void setSnapshotTickBudget(int snapshotTickBudget) {
+        this.snapshotTickBudget = snapshotTickBudget;
+    }
+
+
+    /**
+     * @return the bulkRecalcRate
+     */
+    public int getBulkRecalcRate() {
+        if (bulkRecalcRate < 1) bulkRecalcRate = 1;
+        return bulkRecalcRate;
+    }
+
+
+    /**
+     * @param bulkRecalcRate the bulkRecalcRate to set
+     */
+    public void setBulkRecalcRate(int bulkRecalcRate) {
+        this.bulkRecalcRate = bulkRecalcRate;
+    }
+
+
+    /**
+     * @return the bulkRecalcConcurrency
+     */
+    public int getBulkRecalcConcurrency() {
+        if (bulkRecalcConcurrency < 1) bulkRecalcConcurrency = 1;
+        return bulkRecalcConcurrency;
+    }
+
+
+    /**
+     * @param bulkRecalcConcurrency the bulkRecalcConcurrency to set
+     */
+    public void setBulkRecalcConcurrency(int bulkRecalcConcurrency) {
+        this.bulkRecalcConcurrency = bulkRecalcConcurrency;
+    }
+
+
+    /**
+     * @return the metricsDumpInterval
+     */
+    public int getMetricsDumpInterval() {
+        return metricsDumpInterval;
+    }
+
+
+    /**
+     * @param metricsDumpInterval the metricsDumpInterval to set
+     */
+    public void setMetricsDumpInterval(int metricsDumpInterval) {
+        this.metricsDumpInterval = metricsDumpInterval;
+    }
+
+
     /**
      * @return the zeroNewIslandLevels
      */
@@ -385,4 +581,119 @@ public class ConfigSettings implements ConfigObject {
         this.logReportToConsole = logReportToConsole;
     }
 
+
+    /**
+     * @return true if empty chunk sections should be skipped when scanning
+     */
+    public boolean isSkipEmptySections() {
+        return skipEmptySections;
+    }
+
+
+    /**
+     * @param skipEmptySections the skipEmptySections to set
+     */
+    public void setSkipEmptySections(boolean skipEmptySections) {
+        this.skipEmptySections = skipEmptySections;
+    }
+
+
+    /**
+     * @return true if block columns should only be scanned up to the height map
+     */
+    public boolean isUseHeightMap() {
+        return useHeightMap;
+    }
+
+
+    /**
+     * @param useHeightMap the useHeightMap to set
+     */
+    public void setUseHeightMap(boolean useHeightMap) {
+        this.useHeightMap = useHeightMap;
+    }
+
+
+    /**
+     * @return true if chunks that have never been generated should not be loaded
+     */
+    public boolean isSkipUngeneratedChunks() {
+        return skipUngeneratedChunks;
+    }
+
+
+    /**
+     * @param skipUngeneratedChunks the skipUngeneratedChunks to set
+     */
+    public void setSkipUngeneratedChunks(boolean skipUngeneratedChunks) {
+        this.skipUngeneratedChunks = skipUngeneratedChunks;
+    }
+
+
+
+    /**
+     * @return true if island levels should be updated from block changes
+     */
+    public boolean isIncrementalLevels() {
+        return incrementalLevels;
+    }
+
+
+    /**
+     * @param incrementalLevels the incrementalLevels to set
+     */
+    public void setIncrementalLevels(boolean incrementalLevels) {
+        this.incrementalLevels = incrementalLevels;
+    }
+
+
+    /**
+     * @return minutes between full calculations of islands tracked incrementally
+     */
+    public int getReconcileInterval() {
+        return reconcileInterval;
+    }
+
+
+    /**
+     * @param reconcileInterval the reconcileInterval to set
+     */
+    public void setReconcileInterval(int reconcileInterval) {
+        this.reconcileInterval = reconcileInterval;
+    }
+
+
+
+    /**
+     * @return minutes that chunk block counts are cached, 0 for no cache
+     */
+    public int getChunkCacheExpiry() {
+        return chunkCacheExpiry;
+    }
+
+
+    /**
+     * @param chunkCacheExpiry the chunkCacheExpiry to set
+     */
+    public void setChunkCacheExpiry(int chunkCacheExpiry) {
+        this.chunkCacheExpiry = chunkCacheExpiry;
+    }
+
+
+
+    /**
+     * @return true if cached chunk block counts should be saved to disk
+     */
+    public boolean isChunkCacheStore() {
+        return chunkCacheStore;
+    }
+
+
+    /**
+     * @param chunkCacheStore the chunkCacheStore to set
+     */
+    public void setChunkCacheStore(boolean chunkCacheStore) {
+        this.chunkCacheStore = chunkCacheStore;
+    }
+
 }
@@ -0,0 +1,232 @@
+package world.bentobox.level.listeners;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.block.BlockState;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.block.data.Directional;
+import org.bukkit.block.data.Waterlogged;
+import org.bukkit.block.data.type.Slab;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockBurnEvent;
+import org.bukkit.event.block.BlockDispenseEvent;
+import org.bukkit.event.block.BlockExplodeEvent;
+import org.bukkit.event.block.BlockFadeEvent;
+import org.bukkit.event.block.BlockFertilizeEvent;
+import org.bukkit.event.block.BlockFromToEvent;
+import org.bukkit.event.block.BlockGrowEvent;
+import org.bukkit.event.block.BlockMultiPlaceEvent;
+import org.bukkit.event.block.BlockPistonExtendEvent;
+import org.bukkit.event.block.BlockPistonRetractEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.block.LeavesDecayEvent;
+import org.bukkit.event.block.SpongeAbsorbEvent;
+import org.bukkit.event.entity.EntityChangeBlockEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
+import org.bukkit.event.player.PlayerBucketEmptyEvent;
+import org.bukkit.event.player.PlayerBucketFillEvent;
+import org.bukkit.event.world.StructureGrowEvent;
+
+import world.bentobox.level.Level;
+
+/**
+ * Reports block changes to the {@link world.bentobox.level.calculators.LevelTracker}
+ * so that island levels can be kept up to date without a full calculation, and to the
+ * {@link world.bentobox.level.calculators.ChunkTallyCache} so changed chunks are scanned again
+ * @author tastybento
+ *
+ */
+public class BlockChangeListener implements Listener {
+
+    private final Level addon;
+
+    /**
+     * @param addon - addon
+     */
+    public BlockChangeListener(Level addon) {
+        this.addon = addon;
+    }
+
+    private void changed(Block block, Material from, Material to) {
+        changed(block, from, 1, to, 1);
+    }
+
+    private void changed(Block block, Material from, int fromAmount, Material to, int toAmount) {
+        if (addon.getLevelTracker() != null) {
+            addon.getLevelTracker().blockChanged(block, from, fromAmount, to, toAmount);
+        }
+        if (addon.getChunkCache() != null) {
+            // The material may be the same, e.g., a slab that has been doubled
+            addon.getChunkCache().blockChanged(block);
+        }
+    }
+
+    /**
+     * @param data - block data
+     * @return number of blocks the block counts as, which is two for a double slab
+     */
+    private int amount(BlockData data) {
+        return data instanceof Slab slab && slab.getType().equals(Slab.Type.DOUBLE) ? 2 : 1;
+    }
+
+    /**
+     * @param block - block that is about to be removed
+     * @return what the block will be once it has gone
+     */
+    private Material removed(Block block) {
+        return block.getBlockData() instanceof Waterlogged w && w.isWaterlogged() ? Material.WATER : Material.AIR;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockPlace(BlockPlaceEvent e) {
+        if (e instanceof BlockMultiPlaceEvent mpe) {
+            // Beds, doors and the like
+            mpe.getReplacedBlockStates().forEach(bs -> changed(bs.getBlock(), bs.getType(), bs.getBlock().getType()));
+        } else {
+            BlockState replaced = e.getBlockReplacedState();
+            changed(e.getBlock(), replaced.getType(), amount(replaced.getBlockData()), e.getBlockPlaced().getType(), amount(e.getBlockPlaced().getBlockData()));
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBreak(BlockBreakEvent e) {
+        changed(e.getBlock(), e.getBlock().getType(), amount(e.getBlock().getBlockData()), removed(e.getBlock()), 1);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBurn(BlockBurnEvent e) {
+        changed(e.getBlock(), e.getBlock().getType(), amount(e.getBlock().getBlockData()), Material.AIR, 1);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onLeavesDecay(LeavesDecayEvent e) {
+        changed(e.getBlock(), e.getBlock().getType(), removed(e.getBlock()));
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockFade(BlockFadeEvent e) {
+        changed(e.getBlock(), e.getBlock().getType(), e.getNewState().getType());
+    }
+
+    /**
+     * Covers blocks that form, such as ice or concrete, and blocks that spread, such as grass or fire
+     * @param e - event
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockGrow(BlockGrowEvent e) {
+        changed(e.getBlock(), e.getBlock().getType(), e.getNewState().getType());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onStructureGrow(StructureGrowEvent e) {
+        for (BlockState bs : e.getBlocks()) {
+            changed(bs.getBlock(), bs.getBlock().getType(), bs.getType());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockFertilize(BlockFertilizeEvent e) {
+        for (BlockState bs : e.getBlocks()) {
+            changed(bs.getBlock(), bs.getBlock().getType(), bs.getType());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onSpongeAbsorb(SpongeAbsorbEvent e) {
+        for (BlockState bs : e.getBlocks()) {
+            changed(bs.getBlock(), bs.getBlock().getType(), bs.getType());
+        }
+        changed(e.getBlock(), e.getBlock().getType(), Material.WET_SPONGE);
+    }
+
+    /**
+     * Covers falling blocks, endermen, silverfish, ravagers and the like
+     * @param e - event
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityChangeBlock(EntityChangeBlockEvent e) {
+        changed(e.getBlock(), e.getBlock().getType(), e.getTo());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBucketEmpty(PlayerBucketEmptyEvent e) {
+        // Fish buckets empty water too
+        Material to = e.getBucket() == Material.LAVA_BUCKET ? Material.LAVA : Material.WATER;
+        // Water in a block that can be waterlogged does not change the material
+        if (to == Material.WATER && e.getBlock().getBlockData() instanceof Waterlogged) {
+            to = e.getBlock().getType();
+        }
+        changed(e.getBlock(), e.getBlock().getType(), to);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBucketFill(PlayerBucketFillEvent e) {
+        Material to = e.getBlock().getBlockData() instanceof Waterlogged ? e.getBlock().getType() : Material.AIR;
+        changed(e.getBlock(), e.getBlock().getType(), to);
+    }
+
+    /**
+     * Dispensers can place blocks and empty or fill buckets. What happens is only known once the item has been
+     * dispensed, so the block in front of the dispenser is checked on the next tick.
+     * @param e - event
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockDispense(BlockDispenseEvent e) {
+        if (!(e.getBlock().getBlockData() instanceof Directional d)) {
+            return;
+        }
+        Block target = e.getBlock().getRelative(d.getFacing());
+        Material from = target.getType();
+        int fromAmount = amount(target.getBlockData());
+        Bukkit.getScheduler().runTask(addon.getPlugin(), () -> changed(target, from, fromAmount, target.getType(), amount(target.getBlockData())));
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onFluidFlow(BlockFromToEvent e) {
+        // Dragon eggs also teleport with this event
+        if (e.getBlock().isLiquid()) {
+            changed(e.getToBlock(), e.getToBlock().getType(), e.getBlock().getType());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityExplode(EntityExplodeEvent e) {
+        e.blockList().forEach(b -> changed(b, b.getType(), amount(b.getBlockData()), Material.AIR, 1));
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockExplode(BlockExplodeEvent e) {
+        e.blockList().forEach(b -> changed(b, b.getType(), amount(b.getBlockData()), Material.AIR, 1));
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPistonExtend(BlockPistonExtendEvent e) {
+        moved(e.getBlocks(), e.getDirection());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPistonRetract(BlockPistonRetractEvent e) {
+        moved(e.getBlocks(), e.getDirection());
+    }
+
+    /**
+     * Blocks moved by a piston. The blocks leave air behind them and replace whatever is in front of them.
+     * @param blocks - blocks that are moving
+     * @param direction - direction they are moving in
+     */
+    private void moved(List<Block> blocks, BlockFace direction) {
+        Map<Block, Material> after = new HashMap<>();
+        blocks.forEach(b -> after.putIfAbsent(b, Material.AIR));
+        blocks.forEach(b -> after.put(b.getRelative(direction), b.getType()));
+        after.forEach((b, to) -> changed(b, b.getType(), to));
+    }
+}
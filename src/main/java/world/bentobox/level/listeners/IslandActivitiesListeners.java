@@ -70,7 +70,8 @@ public class IslandActivitiesListeners implements Listener {
 
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onIslandDeleted(IslandDeleteEvent e) {
-        // Remove island
+        // Stop any calculation and remove island
+        addon.getPipeliner().cancel(e.getIsland());
         addon.getManager().deleteIsland(e.getIsland().getUniqueId());
     }
 
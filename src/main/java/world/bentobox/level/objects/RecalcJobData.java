@@ -0,0 +1,105 @@
+package world.bentobox.level.objects;
+
+import com.google.gson.annotations.Expose;
+
+import world.bentobox.bentobox.database.objects.DataObject;
+import world.bentobox.bentobox.database.objects.Table;
+
+/**
+ * Checkpoint of a bulk recalculation of all the islands in a world, so it can carry on after a restart.
+ * Islands are recalculated in order of their unique id.
+ * @author tastybento
+ *
+ */
+@Table(name = "LevelRecalcJob")
+public class RecalcJobData implements DataObject {
+
+    // UniqueId is the world name
+    @Expose
+    private String uniqueId = "";
+    // Islands with a unique id before this one have been recalculated
+    @Expose
+    private String resumeFrom = "";
+    @Expose
+    private int done;
+    // Islands done with a unique id before resumeFrom. Islands after it that finished early are done again on resume.
+    @Expose
+    private int doneBefore;
+    @Expose
+    private int total;
+
+    /**
+     * @param worldName - name of the world being recalculated
+     */
+    public RecalcJobData(String worldName) {
+        uniqueId = worldName;
+    }
+
+    @Override
+    public String getUniqueId() {
+        // This is the world name
+        return uniqueId;
+    }
+
+    @Override
+    public void setUniqueId(String uniqueId) {
+        this.uniqueId = uniqueId;
+    }
+
+    /**
+     * @return the resumeFrom
+     */
+    public String getResumeFrom() {
+        return resumeFrom;
+    }
+
+    /**
+     * @param resumeFrom the resumeFrom to set
+     */
+    public void setResumeFrom(String resumeFrom) {
+        this.resumeFrom = resumeFrom;
+    }
+
+    /**
+     * @return the done
+     */
+    public int getDone() {
+        return done;
+    }
+
+    /**
+     * @param done the done to set
+     */
+    public void setDone(int done) {
+        this.done = done;
+    }
+
+    /**
+     * @return the doneBefore
+     */
+    public int getDoneBefore() {
+        return doneBefore;
+    }
+
+    /**
+     * @param doneBefore the doneBefore to set
+     */
+    public void setDoneBefore(int doneBefore) {
+        this.doneBefore = doneBefore;
+    }
+
+    /**
+     * @return the total
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * @param total the total to set
+     */
+    public void setTotal(int total) {
+        this.total = total;
+    }
+
+}
@@ -2,12 +2,15 @@ package world.bentobox.level;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -59,9 +62,11 @@ import world.bentobox.bentobox.database.objects.Island;
 import world.bentobox.bentobox.managers.IslandWorldManager;
 import world.bentobox.bentobox.managers.IslandsManager;
 import world.bentobox.bentobox.managers.PlayersManager;
+import world.bentobox.level.calculators.CalculationMetrics;
 import world.bentobox.level.calculators.Pipeliner;
 import world.bentobox.level.calculators.Results;
 import world.bentobox.level.config.ConfigSettings;
+import world.bentobox.level.events.IslandLevelCalculatedEvent;
 import world.bentobox.level.objects.IslandLevels;
 import world.bentobox.level.objects.TopTenData;
 
@@ -153,7 +158,9 @@ public class LevelsManagerTest {
         // Pipeliner
         when(addon.getPipeliner()).thenReturn(pipeliner);
         cf = new CompletableFuture<>();
-        when(pipeliner.addIsland(any())).thenReturn(cf);
+        when(pipeliner.addIsland(any(), any())).thenReturn(cf);
+        // Metrics
+        when(addon.getMetrics()).thenReturn(mock(CalculationMetrics.class, Mockito.RETURNS_DEEP_STUBS));
 
         // Island
         when(addon.getIslands()).thenReturn(im);
@@ -273,6 +280,25 @@ public class LevelsManagerTest {
 
     }
 
+    /**
+     * Test method for {@link world.bentobox.level.LevelsManager#calculateLevel(UUID, world.bentobox.bentobox.database.objects.Island)}.
+     */
+    @Test
+    public void testCalculateLevelDuplicate() {
+        Results results = new Results();
+        results.setLevel(10000);
+        CompletableFuture<Results> first = lm.calculateLevel(uuid, island);
+        CompletableFuture<Results> second = lm.calculateLevel(uuid, island);
+        assertSame(first, second);
+        cf.complete(results);
+        assertSame(results, first.join());
+        // The results are only processed once
+        verify(pim, times(1)).callEvent(any(IslandLevelCalculatedEvent.class));
+        assertEquals(10000L, lm.getLevelsData(island).getLevel());
+        // Once done, a new request is a new calculation
+        assertNotSame(first, lm.calculateLevel(uuid, island));
+    }
+
     /**
      * Test method for {@link world.bentobox.level.LevelsManager#getInitialLevel(world.bentobox.bentobox.database.objects.Island)}.
      */
@@ -0,0 +1,55 @@
+package world.bentobox.level.calculators;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import world.bentobox.level.calculators.CalculationMetrics.Histogram;
+
+/**
+ * @author tastybento
+ *
+ */
+public class CalculationMetricsTest {
+
+    private Histogram h;
+
+    @Before
+    public void setUp() {
+        h = new Histogram("test_seconds", "Test", new double[] {1, 2, 4});
+    }
+
+    /**
+     * Test method for {@link world.bentobox.level.calculators.CalculationMetrics.Histogram#record(double)}.
+     */
+    @Test
+    public void testRecord() {
+        assertEquals(0, h.getCount());
+        h.record(0.5);
+        h.record(1.5);
+        h.record(1.5);
+        h.record(3);
+        assertEquals(4, h.getCount());
+        assertEquals(6.5, h.getSum(), 0.0001);
+    }
+
+    /**
+     * Test method for {@link world.bentobox.level.calculators.CalculationMetrics.Histogram#getPercentile(double)}.
+     */
+    @Test
+    public void testGetPercentile() {
+        assertEquals(0, h.getPercentile(50), 0.0001);
+        h.record(0.5);
+        h.record(1.5);
+        h.record(1.5);
+        h.record(3);
+        // Half way through the second bucket
+        assertEquals(1.5, h.getPercentile(50), 0.0001);
+        assertEquals(4, h.getPercentile(100), 0.0001);
+        // Values above the top bucket are reported as the top bound
+        h.record(100);
+        assertEquals(4, h.getPercentile(100), 0.0001);
+    }
+
+}
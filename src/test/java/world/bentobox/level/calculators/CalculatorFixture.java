@@ -0,0 +1,131 @@
+package world.bentobox.level.calculators;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Logger;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.NamespacedKey;
+import org.bukkit.Server;
+import org.bukkit.Tag;
+import org.bukkit.World;
+import org.bukkit.World.Environment;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.mockito.Mockito;
+
+import world.bentobox.bentobox.database.objects.Island;
+import world.bentobox.level.Level;
+import world.bentobox.level.calculators.IslandLevelCalculator.ChunkPair;
+import world.bentobox.level.calculators.SyntheticChunkSnapshot.Layout;
+import world.bentobox.level.config.BlockConfig;
+import world.bentobox.level.config.ConfigSettings;
+
+/**
+ * Sets up a level calculator for one island chunk without a server. The addon and island are mocks,
+ * but the settings, block config and block tables are the real ones, loaded from the default blockconfig.yml.
+ * Mocks are only called once per chunk by the scan, so they do not show up in the per block times.
+ * Used by the tests and by the benchmarks in src/benchmark/java.
+ * @author tastybento
+ *
+ */
+class CalculatorFixture {
+
+    static final int MIN_HEIGHT = -64;
+    static final int MAX_HEIGHT = 320;
+    /**
+     * Number of blocks in one chunk
+     */
+    static final int BLOCKS_PER_CHUNK = 16 * 16 * (MAX_HEIGHT - MIN_HEIGHT);
+
+    final ConfigSettings settings = new ConfigSettings();
+    final Level addon = mock(Level.class, Mockito.RETURNS_DEEP_STUBS);
+    final World world = mock(World.class);
+    final Island island = mock(Island.class);
+    final BlockConfig blockConfig;
+
+    CalculatorFixture() {
+        setUpServer();
+        when(world.getEnvironment()).thenReturn(Environment.NORMAL);
+        when(world.getUID()).thenReturn(UUID.randomUUID());
+        when(world.getMinHeight()).thenReturn(MIN_HEIGHT);
+        when(world.getMaxHeight()).thenReturn(MAX_HEIGHT);
+        when(world.getName()).thenReturn("bskyblock_world");
+        // The island covers chunk 0,0 exactly
+        when(island.getWorld()).thenReturn(world);
+        when(island.getOwner()).thenReturn(UUID.randomUUID());
+        when(island.getCenter()).thenReturn(new Location(world, 8, 64, 8));
+        when(island.getMinProtectedX()).thenReturn(0);
+        when(island.getMinProtectedZ()).thenReturn(0);
+        when(island.getProtectionRange()).thenReturn(8);
+        settings.setNether(false);
+        settings.setEnd(false);
+        when(addon.getSettings()).thenReturn(settings);
+        when(addon.getLevelFormula()).thenReturn(LevelFormula.compile(settings.getLevelCalc()));
+        when(addon.getPlugin().getIWM().getSeaHeight(any())).thenReturn(0);
+        when(addon.isStackersEnabled()).thenReturn(false);
+        blockConfig = loadBlockConfig(addon);
+        when(addon.getBlockConfig()).thenReturn(blockConfig);
+    }
+
+    /**
+     * Block tables need the slabs tag, which comes from the server
+     */
+    @SuppressWarnings("unchecked")
+    static synchronized void setUpServer() {
+        if (Bukkit.getServer() != null) {
+            return;
+        }
+        Server server = mock(Server.class);
+        when(server.getLogger()).thenReturn(Logger.getAnonymousLogger());
+        Tag<Material> tag = mock(Tag.class);
+        when(tag.isTagged(any())).thenAnswer(i -> i.getArgument(0) instanceof Material m && m.name().endsWith("_SLAB"));
+        doReturn(tag).when(server).getTag(anyString(), any(NamespacedKey.class), any());
+        Bukkit.setServer(server);
+    }
+
+    /**
+     * Load the default blockconfig.yml
+     * @param addon - addon to give the block config
+     * @return block config
+     */
+    static BlockConfig loadBlockConfig(Level addon) {
+        try (Reader reader = new InputStreamReader(Objects.requireNonNull(CalculatorFixture.class.getResourceAsStream("/blockconfig.yml")), StandardCharsets.UTF_8)) {
+            File file = File.createTempFile("blockconfig", ".yml");
+            file.deleteOnExit();
+            return new BlockConfig(addon, YamlConfiguration.loadConfiguration(reader), file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return a new calculator for the island
+     */
+    IslandLevelCalculator newCalculator() {
+        return new IslandLevelCalculator(addon, island, new CompletableFuture<>(), false);
+    }
+
+    /**
+     * Make a chunk to scan
+     * @param layout - what the chunk contains
+     * @return chunk to give to the scan
+     */
+    ChunkPair newChunk(Layout layout) {
+        return new ChunkPair(world, null, new SyntheticChunkSnapshot(layout, MIN_HEIGHT, MAX_HEIGHT), blockConfig.getTable(world));
+    }
+}
@@ -0,0 +1,217 @@
+package world.bentobox.level.calculators;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.World.Environment;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import world.bentobox.level.Level;
+import world.bentobox.level.calculators.ChunkTallyCache.ChunkKey;
+import world.bentobox.level.calculators.ChunkTallyCache.Entry;
+import world.bentobox.level.config.BlockConfig;
+import world.bentobox.level.config.BlockTable;
+import world.bentobox.level.config.ConfigSettings;
+
+/**
+ * @author tastybento
+ *
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({Bukkit.class})
+public class ChunkTallyStoreTest {
+
+    private static final String ID = "island1";
+    private static final int SEA_HEIGHT = 0;
+
+    @Mock
+    private Level addon;
+    @Mock
+    private World world;
+    @Mock
+    private BlockConfig blockConfig;
+
+    private Path dataFolder;
+    private Path worldFolder;
+    private Map<Environment, World> worlds;
+    private ChunkTallyStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        PowerMockito.mockStatic(Bukkit.class, Mockito.RETURNS_MOCKS);
+        when(Bukkit.getBukkitVersion()).thenReturn("1.20.4-R0.1-SNAPSHOT");
+        dataFolder = Files.createTempDirectory("level");
+        worldFolder = Files.createTempDirectory("world");
+        Files.writeString(dataFolder.resolve("blockconfig.yml"), "blocks:\n  STONE: 1\n");
+        when(addon.getDataFolder()).thenReturn(dataFolder.toFile());
+        when(addon.getSettings()).thenReturn(new ConfigSettings());
+        when(addon.getBlockConfig()).thenReturn(blockConfig);
+        BlockTable table = mock(BlockTable.class);
+        when(blockConfig.getTable(any())).thenReturn(table);
+        when(world.getEnvironment()).thenReturn(Environment.NORMAL);
+        when(world.getWorldFolder()).thenReturn(worldFolder.toFile());
+        worlds = new EnumMap<>(Environment.class);
+        worlds.put(Environment.NORMAL, world);
+        store = new ChunkTallyStore(addon);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        for (Path folder : List.of(dataFolder, worldFolder)) {
+            try (var paths = Files.walk(folder)) {
+                paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+        Mockito.framework().clearInlineMocks();
+    }
+
+    /**
+     * @return a tally of a chunk scanned a minute ago
+     */
+    private Map<ChunkKey, Entry> makeChunks() {
+        ScanTally tally = new ScanTally(null);
+        tally.mdCount.add(Material.STONE, 100);
+        tally.uwCount.add(Material.SAND, 7);
+        tally.ncCount.add(Material.BEDROCK, 2);
+        tally.rawBlockCount = 100;
+        tally.underWaterBlockCount = 7;
+        tally.limited = new int[] {Material.HOPPER.ordinal() << 1, 3};
+        tally.limitedSize = 2;
+        Map<ChunkKey, Entry> chunks = new ConcurrentHashMap<>();
+        chunks.put(new ChunkKey(Environment.NORMAL, 0, 0, 50), new Entry(System.currentTimeMillis() - 60000, tally));
+        return chunks;
+    }
+
+    /**
+     * Test method for {@link world.bentobox.level.calculators.ChunkTallyStore#save(String, Map, int)}.
+     */
+    @Test
+    public void testSaveLoad() {
+        store.save(ID, makeChunks(), SEA_HEIGHT);
+        // As if after a restart
+        Map<ChunkKey, Entry> loaded = new ChunkTallyStore(addon).load(ID, worlds, SEA_HEIGHT);
+        assertEquals(1, loaded.size());
+        ScanTally tally = loaded.get(new ChunkKey(Environment.NORMAL, 0, 0, 50)).getTally();
+        assertEquals(100, tally.mdCount.count(Material.STONE));
+        assertEquals(7, tally.uwCount.count(Material.SAND));
+        assertEquals(2, tally.ncCount.count(Material.BEDROCK));
+        assertEquals(100, tally.rawBlockCount);
+        assertEquals(7, tally.underWaterBlockCount);
+        assertEquals(2, tally.limitedSize);
+        assertEquals(Material.HOPPER.ordinal() << 1, tally.limited[0]);
+        assertEquals(3, tally.limited[1]);
+        verify(addon, never()).logError(anyString());
+    }
+
+    /**
+     * Test method for {@link world.bentobox.level.calculators.ChunkTallyStore#load(String, Map, int)}.
+     */
+    @Test
+    public void testLoadScannedThisRun() {
+        Map<ChunkKey, Entry> chunks = makeChunks();
+        // Scanned after the server started, so the region file may not have the chunk's changes yet
+        chunks.put(new ChunkKey(Environment.NORMAL, 1, 0, 50), new Entry(System.currentTimeMillis() + 60000, new ScanTally(null)));
+        store.save(ID, chunks, SEA_HEIGHT);
+        assertEquals(1, store.load(ID, worlds, SEA_HEIGHT).size());
+    }
+
+    /**
+     * Test method for {@link world.bentobox.level.calculators.ChunkTallyStore#load(String, Map, int)}.
+     */
+    @Test
+    public void testLoadRegionSaved() throws IOException {
+        store.save(ID, makeChunks(), SEA_HEIGHT);
+        // The server has saved the chunk since it was scanned
+        Path region = worldFolder.resolve("region");
+        Files.createDirectories(region);
+        Files.createFile(region.resolve("r.0.0.mca"));
+        assertTrue(new ChunkTallyStore(addon).load(ID, worlds, SEA_HEIGHT).isEmpty());
+    }
+
+    /**
+     * Test method for {@link world.bentobox.level.calculators.ChunkTallyStore#load(String, Map, int)}.
+     */
+    @Test
+    public void testLoadBlockConfigChanged() throws IOException {
+        store.save(ID, makeChunks(), SEA_HEIGHT);
+        Files.writeString(dataFolder.resolve("blockconfig.yml"), "blocks:\n  STONE: 2\n");
+        assertTrue(new ChunkTallyStore(addon).load(ID, worlds, SEA_HEIGHT).isEmpty());
+    }
+
+    /**
+     * Test method for {@link world.bentobox.level.calculators.ChunkTallyStore#load(String, Map, int)}.
+     */
+    @Test
+    public void testLoadSkipEmptySectionsChanged() {
+        store.save(ID, makeChunks(), SEA_HEIGHT);
+        ConfigSettings settings = new ConfigSettings();
+        settings.setSkipEmptySections(!settings.isSkipEmptySections());
+        when(addon.getSettings()).thenReturn(settings);
+        assertTrue(new ChunkTallyStore(addon).load(ID, worlds, SEA_HEIGHT).isEmpty());
+    }
+
+    /**
+     * Test method for {@link world.bentobox.level.calculators.ChunkTallyStore#load(String, Map, int)}.
+     */
+    @Test
+    public void testLoadSeaHeightChanged() {
+        store.save(ID, makeChunks(), SEA_HEIGHT);
+        assertTrue(new ChunkTallyStore(addon).load(ID, worlds, SEA_HEIGHT + 1).isEmpty());
+    }
+
+    /**
+     * Test method for {@link world.bentobox.level.calculators.ChunkTallyStore#delete(String)}.
+     */
+    @Test
+    public void testDelete() {
+        store.save(ID, makeChunks(), SEA_HEIGHT);
+        store.delete(ID);
+        assertTrue(new ChunkTallyStore(addon).load(ID, worlds, SEA_HEIGHT).isEmpty());
+        assertFalse(new File(dataFolder.toFile(), "chunks/" + ID + ".bin").exists());
+    }
+
+    /**
+     * Test method for {@link world.bentobox.level.calculators.ChunkTallyStore#save(String, Map, int)}.
+     */
+    @Test
+    public void testSaveConcurrently() {
+        Map<ChunkKey, Entry> chunks = makeChunks();
+        List<CompletableFuture<Void>> saves = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            saves.add(CompletableFuture.runAsync(() -> store.save(ID, chunks, SEA_HEIGHT)));
+        }
+        CompletableFuture.allOf(saves.toArray(new CompletableFuture<?>[0])).join();
+        verify(addon, never()).logError(anyString());
+        assertEquals(1, new ChunkTallyStore(addon).load(ID, worlds, SEA_HEIGHT).size());
+    }
+}
@@ -0,0 +1,79 @@
+package world.bentobox.level.calculators;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * @author tastybento
+ *
+ */
+public class LevelFormulaTest {
+
+    /**
+     * Test method for {@link world.bentobox.level.calculators.LevelFormula#evaluate(long, long)}.
+     */
+    @Test
+    public void testEvaluateDefault() {
+        LevelFormula f = LevelFormula.compile("blocks / level_cost");
+        assertEquals(12.34, f.evaluate(1234, 100), 0.0001);
+        assertEquals(0, f.evaluate(0, 100), 0.0001);
+        assertEquals(-0.5, f.evaluate(-50, 100), 0.0001);
+    }
+
+    /**
+     * Test method for {@link world.bentobox.level.calculators.LevelFormula#evaluate(long, long)}.
+     */
+    @Test
+    public void testEvaluateFunctions() {
+        LevelFormula f = LevelFormula.compile("3 * sqrt(blocks / level_cost)");
+        assertEquals(30, f.evaluate(10000, 100), 0.0001);
+        assertEquals(8, LevelFormula.compile("2^3").evaluate(0, 1), 0.0001);
+        assertEquals(1, LevelFormula.compile("sin(90)").evaluate(0, 1), 0.0001);
+        assertEquals(-7, LevelFormula.compile("-(1 + 2) * 3 + 2").evaluate(0, 1), 0.0001);
+        assertEquals(2.5, LevelFormula.compile("blocks/2 - -0.5").evaluate(4, 1), 0.0001);
+    }
+
+    /**
+     * Test method for {@link world.bentobox.level.calculators.LevelFormula#pointsToNextLevel(long, long)}.
+     */
+    @Test
+    public void testPointsToNextLevelDefault() {
+        LevelFormula f = LevelFormula.compile("blocks / level_cost");
+        assertEquals(66, f.pointsToNextLevel(1234, 100));
+        assertEquals(100, f.pointsToNextLevel(1200, 100));
+        assertEquals(150, f.pointsToNextLevel(-50, 100));
+        assertEquals(51, f.pointsToNextLevel(-150, 100));
+    }
+
+    /**
+     * Test method for {@link world.bentobox.level.calculators.LevelFormula#pointsToNextLevel(long, long)}.
+     */
+    @Test
+    public void testPointsToNextLevelSearch() {
+        LevelFormula f = LevelFormula.compile("3 * sqrt(blocks / level_cost)");
+        // Level 3000 needs 100,000,000 points
+        assertEquals(100_000_000L - 99_990_000L, f.pointsToNextLevel(99_990_000L, 100));
+        // Gaps bigger than 10,000 points are found
+        assertEquals(35212, f.pointsToNextLevel(1_000_000_000L, 100));
+        // A formula that never goes up
+        assertEquals(0, LevelFormula.compile("5").pointsToNextLevel(10, 100));
+    }
+
+    /**
+     * Test method for {@link world.bentobox.level.calculators.LevelFormula#compile(String)}.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testCompileUnknownFunction() {
+        LevelFormula.compile("log(blocks)");
+    }
+
+    /**
+     * Test method for {@link world.bentobox.level.calculators.LevelFormula#compile(String)}.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testCompileBadFormula() {
+        LevelFormula.compile("blocks / level_cost )");
+    }
+
+}
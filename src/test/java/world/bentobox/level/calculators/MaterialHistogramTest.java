@@ -0,0 +1,117 @@
+package world.bentobox.level.calculators;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import org.bukkit.Material;
+import org.junit.Before;
+import org.junit.Test;
+
+import world.bentobox.bentobox.util.Pair;
+
+/**
+ * @author tastybento
+ *
+ */
+public class MaterialHistogramTest {
+
+    private MaterialHistogram h;
+
+    @Before
+    public void setUp() {
+        h = new MaterialHistogram();
+    }
+
+    /**
+     * Test method for {@link world.bentobox.level.calculators.MaterialHistogram#add(org.bukkit.Material)}.
+     */
+    @Test
+    public void testAdd() {
+        assertTrue(h.isEmpty());
+        h.add(Material.STONE);
+        h.add(Material.STONE);
+        h.add(Material.DIRT, 5);
+        h.add(Material.GRASS_BLOCK, 0);
+        assertFalse(h.isEmpty());
+        assertEquals(2, h.count(Material.STONE));
+        assertEquals(5, h.count(Material.DIRT));
+        assertEquals(0, h.count(Material.GRASS_BLOCK));
+        assertEquals(7L, h.size());
+        assertEquals(2, h.distinct());
+    }
+
+    /**
+     * Test method for {@link world.bentobox.level.calculators.MaterialHistogram#addAll(MaterialHistogram)}.
+     */
+    @Test
+    public void testAddAll() {
+        h.add(Material.STONE, 3);
+        MaterialHistogram other = new MaterialHistogram();
+        other.add(Material.STONE, 2);
+        other.add(Material.SAND, 4);
+        h.addAll(other);
+        assertEquals(5, h.count(Material.STONE));
+        assertEquals(4, h.count(Material.SAND));
+        assertEquals(9L, h.size());
+    }
+
+    /**
+     * Test method for {@link world.bentobox.level.calculators.MaterialHistogram#highestCountFirst()}.
+     */
+    @Test
+    public void testHighestCountFirst() {
+        h.add(Material.STONE, 1);
+        h.add(Material.SAND, 10);
+        h.add(Material.DIRT, 5);
+        List<Pair<Material, Integer>> list = h.highestCountFirst();
+        assertEquals(Material.SAND, list.get(0).getKey());
+        assertEquals(Material.DIRT, list.get(1).getKey());
+        assertEquals(Material.STONE, list.get(2).getKey());
+    }
+
+    /**
+     * Test method for {@link world.bentobox.level.calculators.MaterialHistogram#trim()}.
+     */
+    @Test
+    public void testTrim() {
+        h.add(Material.STONE, 3);
+        h.add(Material.SAND);
+        h.trim();
+        assertEquals(3, h.count(Material.STONE));
+        assertEquals(1, h.count(Material.SAND));
+        assertEquals(0, h.count(Material.DIRT));
+        assertEquals(4L, h.size());
+        MaterialHistogram other = new MaterialHistogram();
+        other.addAll(h);
+        assertEquals(3, other.count(Material.STONE));
+        // Still usable after trimming
+        h.add(Material.DIRT, 2);
+        h.add(Material.STONE);
+        assertEquals(4, h.count(Material.STONE));
+        assertEquals(2, h.count(Material.DIRT));
+        assertEquals(3, h.distinct());
+        // Empty histograms can be trimmed too
+        MaterialHistogram empty = new MaterialHistogram();
+        empty.trim();
+        empty.add(Material.STONE);
+        assertEquals(1, empty.count(Material.STONE));
+    }
+
+    /**
+     * Test method for {@link world.bentobox.level.calculators.MaterialHistogram#toMap()}.
+     */
+    @Test
+    public void testToMap() {
+        h.add(Material.STONE, 3);
+        h.add(Material.SAND);
+        Map<Material, Integer> map = h.toMap();
+        assertEquals(2, map.size());
+        assertEquals(3, (int)map.get(Material.STONE));
+        assertEquals(1, (int)map.get(Material.SAND));
+    }
+
+}
@@ -0,0 +1,421 @@
+package world.bentobox.level.calculators;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.World.Environment;
+import org.bukkit.block.BlockState;
+import org.bukkit.entity.Player;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+import org.mockito.Mockito;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.reflect.Whitebox;
+
+import com.google.common.collect.ImmutableSet;
+
+import world.bentobox.bentobox.BentoBox;
+import world.bentobox.bentobox.api.addons.AddonDescription;
+import world.bentobox.bentobox.api.addons.GameModeAddon;
+import world.bentobox.bentobox.database.AbstractDatabaseHandler;
+import world.bentobox.bentobox.database.DatabaseSetup;
+import world.bentobox.bentobox.database.objects.Island;
+import world.bentobox.bentobox.managers.AddonsManager;
+import world.bentobox.bentobox.managers.IslandWorldManager;
+import world.bentobox.bentobox.managers.IslandsManager;
+import world.bentobox.bentobox.managers.PlayersManager;
+import world.bentobox.bentobox.util.Util;
+import world.bentobox.level.Level;
+import world.bentobox.level.LevelsManager;
+import world.bentobox.level.config.BlockConfig;
+import world.bentobox.level.config.ConfigSettings;
+import world.bentobox.level.listeners.JoinLeaveListener;
+
+/**
+ * Runs the real {@link Pipeliner}, {@link IslandLevelCalculator} and {@link LevelsManager} against a simulated server,
+ * so changes to the scheduling can be measured without a real one.
+ * The main thread is simulated tick by tick on the calling thread. Chunks load after a set number of ticks and
+ * every chunk is the same synthetic chunk. Scans run on the real scan threads.
+ * Must be run from a test that prepares {@link Bukkit}, {@link BentoBox}, {@link DatabaseSetup} and {@link Util}
+ * for PowerMock, and {@link #setUpDatabase()} must be called before the class's tests.
+ * @author tastybento
+ *
+ */
+class PipelineSimulator {
+
+    private static final int MIN_HEIGHT = -64;
+    private static final int MAX_HEIGHT = 320;
+    private static final double MILLIS_PER_TICK = 50D;
+
+    /**
+     * What to simulate
+     * @param name - name for the report
+     * @param islands - number of islands that ask for their level
+     * @param protectionRange - protection range of the islands. Sets how many chunks each island has.
+     * @param dimensions - true to scan the nether and end islands too
+     * @param login - true if the requests come from players logging in with calc on login on, false if they come from the API
+     * @param arrivalTicks - the requests are spread evenly over this many ticks. 0 asks for them all at once.
+     * @param chunkLoadTicks - ticks it takes to load a chunk
+     * @param chunkLoadJitter - up to this many ticks are added at random to each chunk load
+     * @param snapshotMillis - main thread time it takes to snapshot a chunk
+     * @param tickMillis - real time each tick takes. If 0, ticks run as fast as possible and the scan threads are
+     * waited for at the end of every tick, as if scans took less than a tick.
+     */
+    record Scenario(String name, int islands, int protectionRange, boolean dimensions, boolean login, int arrivalTicks,
+            int chunkLoadTicks, int chunkLoadJitter, double snapshotMillis, long tickMillis) {}
+
+    /**
+     * What happened
+     * @param scenario - scenario that was run
+     * @param completed - requests that got results
+     * @param available - requests that got a level
+     * @param ticks - ticks it took
+     * @param islandsPerMinute - completed requests per simulated minute
+     * @param p50 - median time from request to results, in simulated milliseconds
+     * @param p99 - 99th percentile time from request to results, in simulated milliseconds
+     * @param tickMean - average real main thread time each tick, in milliseconds
+     * @param tickP99 - 99th percentile main thread time each tick, in milliseconds
+     * @param tickMax - longest main thread time of a tick, in milliseconds
+     * @param levels - levels that were calculated. All the islands are the same, so there should only be one.
+     */
+    record Report(Scenario scenario, int completed, int available, long ticks, double islandsPerMinute, double p50, double p99,
+            double tickMean, double tickP99, double tickMax, List<Long> levels) {
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s: %d islands in %d ticks, %.1f islands/min, latency p50 %.0f ms p99 %.0f ms,"
+                    + " main thread per tick mean %.3f ms p99 %.3f ms max %.3f ms",
+                    scenario.name(), completed, ticks, islandsPerMinute, p50, p99, tickMean, tickP99, tickMax);
+        }
+    }
+
+    /**
+     * A task on the simulated scheduler
+     */
+    private static class Task implements Comparable<Task> {
+        private final Runnable runnable;
+        private final long period;
+        private final long seq;
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+        private long due;
+
+        Task(Runnable runnable, long due, long period, long seq) {
+            this.runnable = runnable;
+            this.due = due;
+            this.period = period;
+            this.seq = seq;
+        }
+
+        @Override
+        public int compareTo(Task o) {
+            return due == o.due ? Long.compare(seq, o.seq) : Long.compare(due, o.due);
+        }
+    }
+
+    private final Scenario scenario;
+    private final ConfigSettings settings = new ConfigSettings();
+    private final Level addon = mock(Level.class);
+    private final BentoBox plugin = mock(BentoBox.class);
+    private final IslandsManager im = mock(IslandsManager.class);
+    private final Map<Environment, World> worlds = new HashMap<>();
+    private final Map<World, Chunk> chunks = new HashMap<>();
+    private final Map<UUID, Island> islands = new HashMap<>();
+    private final List<Island> islandList = new ArrayList<>();
+    private final PriorityQueue<Task> tasks = new PriorityQueue<>();
+    private final Random random = new Random(1);
+    private long seq;
+    private volatile long tick;
+    private Thread mainThread;
+    private Pipeliner pipeliner;
+
+    /**
+     * Set up the database, which is held statically by BentoBox. Call from the test's BeforeClass.
+     */
+    @SuppressWarnings("unchecked")
+    static void setUpDatabase() {
+        PowerMockito.mockStatic(DatabaseSetup.class);
+        DatabaseSetup dbSetup = mock(DatabaseSetup.class);
+        when(DatabaseSetup.getDatabase()).thenReturn(dbSetup);
+        when(dbSetup.getHandler(any())).thenReturn(mock(AbstractDatabaseHandler.class));
+    }
+
+    /**
+     * @param scenario - what to simulate
+     */
+    PipelineSimulator(Scenario scenario) {
+        this.scenario = scenario;
+        settings.setMetricsDumpInterval(0);
+        settings.setNether(scenario.dimensions());
+        settings.setEnd(scenario.dimensions());
+        settings.setCalcOnLogin(scenario.login());
+    }
+
+    /**
+     * @return settings to use. Change them before running.
+     */
+    ConfigSettings getSettings() {
+        return settings;
+    }
+
+    /**
+     * Run the scenario and stop the pipeliner
+     * @return report
+     */
+    Report run() {
+        setUp();
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        List<Long> levels = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger completed = new AtomicInteger();
+        AtomicInteger available = new AtomicInteger();
+        List<Double> tickTimes = new ArrayList<>();
+        int requested = 0;
+        long maxTicks = scenario.arrivalTicks() + (long)scenario.islands() * 1200;
+        try {
+            while (completed.get() < scenario.islands()) {
+                if (tick > maxTicks) {
+                    throw new IllegalStateException(scenario.name() + " did not finish in " + maxTicks + " ticks. "
+                            + completed.get() + " of " + scenario.islands() + " done.");
+                }
+                long start = System.nanoTime();
+                // New requests for this tick
+                int due = scenario.arrivalTicks() == 0 ? scenario.islands()
+                        : (int)Math.min(scenario.islands(), (tick + 1) * scenario.islands() / scenario.arrivalTicks());
+                while (requested < due) {
+                    long asked = tick;
+                    request(islandList.get(requested++)).whenComplete((r, ex) -> {
+                        latencies.add(tick - asked);
+                        if (r != null && r.getState().equals(Results.Result.AVAILABLE)) {
+                            available.incrementAndGet();
+                            levels.add(r.getLevel());
+                        }
+                        completed.incrementAndGet();
+                    });
+                }
+                runTasks();
+                tickTimes.add((System.nanoTime() - start) / 1e6);
+                endTick(start);
+                tick++;
+            }
+        } finally {
+            pipeliner.stop();
+        }
+        return report(completed.get(), available.get(), latencies, tickTimes, levels);
+    }
+
+    private CompletableFuture<Results> request(Island island) {
+        if (!scenario.login()) {
+            return addon.getManager().calculateLevel(island.getOwner(), island);
+        }
+        Player player = mock(Player.class);
+        when(player.getUniqueId()).thenReturn(island.getOwner());
+        new JoinLeaveListener(addon).onPlayerJoin(new PlayerJoinEvent(player, "joined"));
+        // Same priority as the login, so this only gets the future of the calculation that the login started
+        return pipeliner.addIsland(island, Pipeliner.Priority.BACKGROUND);
+    }
+
+    /**
+     * Run the tasks that are due this tick. Tasks that are scheduled while they run go in later ticks.
+     */
+    private void runTasks() {
+        while (true) {
+            Task task;
+            synchronized (tasks) {
+                task = tasks.peek();
+                if (task == null || task.due > tick) {
+                    return;
+                }
+                tasks.poll();
+            }
+            if (task.cancelled.get()) {
+                continue;
+            }
+            task.runnable.run();
+            if (task.period > 0 && !task.cancelled.get()) {
+                synchronized (tasks) {
+                    task.due = tick + task.period;
+                    tasks.add(task);
+                }
+            }
+        }
+    }
+
+    private void endTick(long start) {
+        if (scenario.tickMillis() > 0) {
+            long left = TimeUnit.NANOSECONDS.toMillis(start + TimeUnit.MILLISECONDS.toNanos(scenario.tickMillis()) - System.nanoTime());
+            if (left > 0) {
+                try {
+                    Thread.sleep(left);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        } else {
+            pipeliner.getScanPool().awaitQuiescence(10, TimeUnit.SECONDS);
+        }
+    }
+
+    private Report report(int completed, int available, List<Long> latencies, List<Double> tickTimes, List<Long> levels) {
+        List<Long> sorted = latencies.stream().sorted().toList();
+        List<Double> times = tickTimes.stream().sorted().toList();
+        double minutes = tick * MILLIS_PER_TICK / 60000D;
+        return new Report(scenario, completed, available, tick, minutes > 0 ? completed / minutes : 0,
+                percentile(sorted, 50) * MILLIS_PER_TICK, percentile(sorted, 99) * MILLIS_PER_TICK,
+                times.stream().mapToDouble(Double::doubleValue).average().orElse(0), percentile(times, 99),
+                times.isEmpty() ? 0 : times.get(times.size() - 1), levels.stream().distinct().toList());
+    }
+
+    private static double percentile(List<? extends Number> sorted, double p) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int index = (int)Math.ceil(p / 100 * sorted.size()) - 1;
+        return sorted.get(Math.max(0, index)).doubleValue();
+    }
+
+    /**
+     * Add a task to the simulated scheduler. Can be called from any thread.
+     * @param runnable - task
+     * @param delay - ticks to wait, at least one
+     * @param period - ticks between runs, or 0 to run once
+     * @return the task if it repeats, so it can be cancelled, otherwise null
+     */
+    private BukkitTask schedule(Runnable runnable, long delay, long period) {
+        Task task;
+        synchronized (tasks) {
+            task = new Task(runnable, tick + Math.max(1, delay), period, seq++);
+            tasks.add(task);
+        }
+        if (period == 0) {
+            // Nothing keeps these, and making a mock for each would show up in the tick times
+            return null;
+        }
+        BukkitTask bt = mock(BukkitTask.class);
+        doAnswer(i -> task.cancelled.getAndSet(true)).when(bt).cancel();
+        return bt;
+    }
+
+    private void setUp() {
+        mainThread = Thread.currentThread();
+        Whitebox.setInternalState(BentoBox.class, "instance", plugin);
+        when(plugin.isEnabled()).thenReturn(true);
+        // Scheduler
+        BukkitScheduler scheduler = mock(BukkitScheduler.class);
+        when(scheduler.runTask(any(Plugin.class), any(Runnable.class))).thenAnswer(i -> schedule(i.getArgument(1), 1, 0));
+        when(scheduler.runTaskLater(any(Plugin.class), any(Runnable.class), anyLong())).thenAnswer(i -> schedule(i.getArgument(1), i.<Long>getArgument(2), 0));
+        when(scheduler.runTaskTimer(any(Plugin.class), any(Runnable.class), anyLong(), anyLong()))
+        .thenAnswer(i -> schedule(i.getArgument(1), i.<Long>getArgument(2), Math.max(1, i.<Long>getArgument(3))));
+        // Bukkit
+        PowerMockito.mockStatic(Bukkit.class, Mockito.RETURNS_MOCKS);
+        when(Bukkit.getScheduler()).thenReturn(scheduler);
+        when(Bukkit.isPrimaryThread()).thenAnswer(i -> Thread.currentThread() == mainThread);
+        // Chunks load after a while, on the main thread like on Paper
+        PowerMockito.mockStatic(Util.class, Mockito.CALLS_REAL_METHODS);
+        PowerMockito.doAnswer(i -> {
+            CompletableFuture<Chunk> f = new CompletableFuture<>();
+            Chunk chunk = chunks.get(i.<World>getArgument(0));
+            int jitter = scenario.chunkLoadJitter() > 0 ? random.nextInt(scenario.chunkLoadJitter() + 1) : 0;
+            schedule(() -> f.complete(chunk), scenario.chunkLoadTicks() + jitter, 0);
+            return f;
+        }).when(Util.class);
+        Util.getChunkAtAsync(any(World.class), anyInt(), anyInt(), anyBoolean());
+        // Worlds
+        IslandWorldManager iwm = mock(IslandWorldManager.class);
+        when(plugin.getIWM()).thenReturn(iwm);
+        when(iwm.getPermissionPrefix(any())).thenReturn("bskyblock.");
+        when(iwm.getFriendlyName(any())).thenReturn("BSkyBlock");
+        for (Environment env : List.of(Environment.NORMAL, Environment.NETHER, Environment.THE_END)) {
+            World world = mock(World.class);
+            when(world.getEnvironment()).thenReturn(env);
+            when(world.getUID()).thenReturn(UUID.randomUUID());
+            when(world.getName()).thenReturn("bskyblock_world" + (env == Environment.NORMAL ? "" : "_" + env.name().toLowerCase(Locale.ENGLISH)));
+            when(world.getMinHeight()).thenReturn(MIN_HEIGHT);
+            when(world.getMaxHeight()).thenReturn(MAX_HEIGHT);
+            worlds.put(env, world);
+            chunks.put(world, makeChunk(SyntheticChunkSnapshot.Layout.SKYBLOCK));
+        }
+        World world = worlds.get(Environment.NORMAL);
+        when(iwm.getNetherWorld(any())).thenReturn(worlds.get(Environment.NETHER));
+        when(iwm.getEndWorld(any())).thenReturn(worlds.get(Environment.THE_END));
+        // Islands, all at the same place because every chunk is the same
+        for (int n = 0; n < scenario.islands(); n++) {
+            Island island = mock(Island.class);
+            UUID owner = UUID.randomUUID();
+            when(island.getUniqueId()).thenReturn(UUID.randomUUID().toString());
+            when(island.getOwner()).thenReturn(owner);
+            when(island.getMemberSet()).thenReturn(ImmutableSet.of(owner));
+            when(island.getWorld()).thenReturn(world);
+            when(island.getCenter()).thenReturn(new Location(world, 0, 64, 0));
+            when(island.getMinProtectedX()).thenReturn(-scenario.protectionRange());
+            when(island.getMinProtectedZ()).thenReturn(-scenario.protectionRange());
+            when(island.getProtectionRange()).thenReturn(scenario.protectionRange());
+            islands.put(owner, island);
+            islandList.add(island);
+        }
+        when(im.getIsland(any(), any(UUID.class))).thenAnswer(i -> islands.get(i.<UUID>getArgument(1)));
+        // Game mode, for logins
+        GameModeAddon gm = mock(GameModeAddon.class);
+        when(gm.getDescription()).thenReturn(new AddonDescription.Builder("main", "BSkyBlock", "1.0").build());
+        when(gm.getIslands()).thenReturn(im);
+        when(gm.getOverWorld()).thenReturn(world);
+        AddonsManager am = mock(AddonsManager.class);
+        when(am.getGameModeAddons()).thenReturn(List.of(gm));
+        when(plugin.getAddonsManager()).thenReturn(am);
+        // Addon
+        when(addon.getPlugin()).thenReturn(plugin);
+        when(addon.getSettings()).thenReturn(settings);
+        when(addon.getIslands()).thenReturn(im);
+        when(addon.getPlayers()).thenReturn(mock(PlayersManager.class));
+        when(addon.getLevelFormula()).thenReturn(LevelFormula.compile(settings.getLevelCalc()));
+        // These use the addon, so they must be made before they are stubbed
+        BlockConfig blockConfig = CalculatorFixture.loadBlockConfig(addon);
+        when(addon.getBlockConfig()).thenReturn(blockConfig);
+        CalculationMetrics metrics = new CalculationMetrics(addon);
+        when(addon.getMetrics()).thenReturn(metrics);
+        LevelsManager manager = new LevelsManager(addon);
+        when(addon.getManager()).thenReturn(manager);
+        pipeliner = new Pipeliner(addon);
+        when(addon.getPipeliner()).thenReturn(pipeliner);
+    }
+
+    private Chunk makeChunk(SyntheticChunkSnapshot.Layout layout) {
+        SyntheticChunkSnapshot snapshot = new SyntheticChunkSnapshot(layout, MIN_HEIGHT, MAX_HEIGHT);
+        long cost = (long)(scenario.snapshotMillis() * 1e6);
+        Chunk chunk = mock(Chunk.class);
+        when(chunk.getTileEntities()).thenReturn(new BlockState[0]);
+        when(chunk.getChunkSnapshot()).thenAnswer(i -> {
+            // Keep the main thread busy for as long as a real snapshot would
+            long end = System.nanoTime() + cost;
+            while (System.nanoTime() < end) {
+                Thread.onSpinWait();
+            }
+            return snapshot;
+        });
+        return chunk;
+    }
+
+}
@@ -0,0 +1,96 @@
+package world.bentobox.level.calculators;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import org.bukkit.Bukkit;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import world.bentobox.bentobox.BentoBox;
+import world.bentobox.bentobox.database.DatabaseSetup;
+import world.bentobox.bentobox.util.Util;
+import world.bentobox.level.calculators.PipelineSimulator.Report;
+import world.bentobox.level.calculators.PipelineSimulator.Scenario;
+
+/**
+ * Load scenarios for the level calculation pipeline. Only the small scenario runs in a normal build.
+ * The others take a while and are run with -Dlevel.simulate=true, e.g.,
+ * mvn test -Dtest=PipelineSimulatorTest -Dlevel.simulate=true
+ * @author tastybento
+ *
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({Bukkit.class, BentoBox.class, DatabaseSetup.class, Util.class})
+public class PipelineSimulatorTest {
+
+    private static final boolean SIMULATE = Boolean.getBoolean("level.simulate");
+
+    @BeforeClass
+    public static void beforeClass() {
+        PipelineSimulator.setUpDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        Mockito.framework().clearInlineMocks();
+    }
+
+    private Report run(PipelineSimulator sim) throws Exception {
+        Report report = sim.run();
+        if (SIMULATE) {
+            System.out.println(report);
+        }
+        assertEquals(report.scenario().islands(), report.completed());
+        assertEquals(report.scenario().islands(), report.available());
+        // Every island is the same, so every level must be the same
+        assertEquals(1, report.levels().size());
+        return report;
+    }
+
+    /**
+     * A few islands queued at once
+     */
+    @Test
+    public void testSmallQueue() throws Exception {
+        run(new PipelineSimulator(new Scenario("small queue", 20, 16, false, false, 0, 2, 2, 0.1, 0)));
+    }
+
+    /**
+     * A big queue, e.g., from an admin or the API asking for every island
+     */
+    @Test
+    public void testQueued5000() throws Exception {
+        assumeTrue(SIMULATE);
+        PipelineSimulator sim = new PipelineSimulator(new Scenario("5000 queued", 5000, 32, false, false, 0, 2, 4, 0.3, 0));
+        sim.getSettings().setConcurrentIslandCalcs(4);
+        run(sim);
+    }
+
+    /**
+     * Players logging in over 10 seconds after a restart, with calc on login
+     */
+    @Test
+    public void testLoginStorm() throws Exception {
+        assumeTrue(SIMULATE);
+        PipelineSimulator sim = new PipelineSimulator(new Scenario("login storm", 500, 50, false, true, 200, 2, 4, 0.3, 0));
+        sim.getSettings().setConcurrentIslandCalcs(4);
+        run(sim);
+    }
+
+    /**
+     * Islands with nether and end islands, in real time
+     */
+    @Test
+    public void testMixedDimensions() throws Exception {
+        assumeTrue(SIMULATE);
+        PipelineSimulator sim = new PipelineSimulator(new Scenario("mixed dimensions", 200, 50, true, false, 1200, 2, 4, 0.3, 50));
+        sim.getSettings().setConcurrentIslandCalcs(4);
+        run(sim);
+    }
+}
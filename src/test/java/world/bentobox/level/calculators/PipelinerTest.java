@@ -0,0 +1,167 @@
+package world.bentobox.level.calculators;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.World.Environment;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import world.bentobox.bentobox.database.objects.Island;
+import world.bentobox.level.Level;
+import world.bentobox.level.calculators.Pipeliner.Priority;
+import world.bentobox.level.calculators.Results.Result;
+import world.bentobox.level.config.ConfigSettings;
+
+/**
+ * Tests the queue of the pipeliner. Scheduled tasks are never run, so calculations stay in the queue.
+ * @author tastybento
+ *
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({Bukkit.class})
+public class PipelinerTest {
+
+    private Level addon;
+    private World world;
+    private Pipeliner pipeliner;
+
+    @Before
+    public void setUp() {
+        PowerMockito.mockStatic(Bukkit.class, Mockito.RETURNS_MOCKS);
+        BukkitScheduler scheduler = mock(BukkitScheduler.class);
+        BukkitTask task = mock(BukkitTask.class);
+        when(scheduler.runTaskTimer(any(Plugin.class), any(Runnable.class), anyLong(), anyLong())).thenReturn(task);
+        when(Bukkit.getScheduler()).thenReturn(scheduler);
+        world = mock(World.class);
+        when(world.getEnvironment()).thenReturn(Environment.NORMAL);
+        ConfigSettings settings = new ConfigSettings();
+        settings.setNether(false);
+        settings.setEnd(false);
+        addon = mock(Level.class, Mockito.RETURNS_DEEP_STUBS);
+        when(addon.getSettings()).thenReturn(settings);
+        pipeliner = new Pipeliner(addon);
+    }
+
+    @After
+    public void tearDown() {
+        pipeliner.stop();
+        Mockito.framework().clearInlineMocks();
+    }
+
+    private Island newIsland() {
+        Island island = mock(Island.class);
+        when(island.getUniqueId()).thenReturn(UUID.randomUUID().toString());
+        when(island.getWorld()).thenReturn(world);
+        return island;
+    }
+
+    /**
+     * Test method for {@link world.bentobox.level.calculators.Pipeliner#addIsland(Island, Priority)}.
+     */
+    @Test
+    public void testAddIslandDuplicate() {
+        Island island = newIsland();
+        CompletableFuture<Results> first = pipeliner.addIsland(island, Priority.BACKGROUND);
+        assertSame(first, pipeliner.addIsland(island, Priority.BACKGROUND));
+        assertSame(first, pipeliner.addIsland(island, Priority.INTERACTIVE));
+        assertEquals(1, pipeliner.getIslandsInQueue());
+        // Once complete, the island can be queued again
+        first.complete(null);
+        assertNotSame(first, pipeliner.addIsland(island, Priority.BACKGROUND));
+    }
+
+    /**
+     * Test method for {@link world.bentobox.level.calculators.Pipeliner#getQueuePosition(Island)}.
+     */
+    @Test
+    public void testPriorityOrder() {
+        Island bulk = newIsland();
+        Island background = newIsland();
+        Island interactive = newIsland();
+        Island later = newIsland();
+        pipeliner.addIsland(bulk, Priority.BULK);
+        pipeliner.addIsland(background, Priority.BACKGROUND);
+        pipeliner.addIsland(interactive, Priority.INTERACTIVE);
+        pipeliner.addIsland(later, Priority.BACKGROUND);
+        assertEquals(1, pipeliner.getQueuePosition(interactive));
+        // Same priority runs in the order queued
+        assertEquals(2, pipeliner.getQueuePosition(background));
+        assertEquals(3, pipeliner.getQueuePosition(later));
+        assertEquals(4, pipeliner.getQueuePosition(bulk));
+        assertEquals(-1, pipeliner.getQueuePosition(newIsland()));
+    }
+
+    /**
+     * Test method for {@link world.bentobox.level.calculators.Pipeliner#addIsland(Island, Priority)}.
+     */
+    @Test
+    public void testPromote() {
+        Island bulk = newIsland();
+        Island background = newIsland();
+        pipeliner.addIsland(bulk, Priority.BULK);
+        pipeliner.addIsland(background, Priority.BACKGROUND);
+        assertEquals(2, pipeliner.getQueuePosition(bulk));
+        // Asking again more urgently moves it up
+        pipeliner.addIsland(bulk, Priority.INTERACTIVE);
+        assertEquals(1, pipeliner.getQueuePosition(bulk));
+        // Asking again less urgently does not move it down
+        pipeliner.addIsland(bulk, Priority.BULK);
+        assertEquals(1, pipeliner.getQueuePosition(bulk));
+    }
+
+    /**
+     * Test method for {@link world.bentobox.level.calculators.Pipeliner#cancel(Island)}.
+     */
+    @Test
+    public void testCancel() {
+        Island island = newIsland();
+        Island other = newIsland();
+        CompletableFuture<Results> r = pipeliner.addIsland(island, Priority.BACKGROUND);
+        pipeliner.addIsland(other, Priority.BACKGROUND);
+        assertEquals(1, pipeliner.cancel(island));
+        assertTrue(r.isDone());
+        assertEquals(Result.CANCELLED, r.join().getState());
+        assertEquals(-1, pipeliner.getQueuePosition(island));
+        assertEquals(1, pipeliner.getQueuePosition(other));
+    }
+
+    /**
+     * Test method for {@link world.bentobox.level.calculators.Pipeliner#stop()}.
+     */
+    @Test
+    public void testStop() {
+        CompletableFuture<Results> r1 = pipeliner.addIsland(newIsland(), Priority.BACKGROUND);
+        CompletableFuture<Results> r2 = pipeliner.addIsland(newIsland(), Priority.BULK);
+        CompletableFuture<Results> zero = pipeliner.zeroIsland(newIsland());
+        pipeliner.stop();
+        // Everyone waiting gets an answer
+        for (CompletableFuture<Results> r : List.of(r1, r2, zero)) {
+            assertTrue(r.isDone());
+            assertEquals(Result.CANCELLED, r.join().getState());
+        }
+        assertEquals(0, pipeliner.getIslandsInQueue());
+        assertTrue(pipeliner.isStopped());
+    }
+}
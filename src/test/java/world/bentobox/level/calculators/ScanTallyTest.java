@@ -0,0 +1,121 @@
+package world.bentobox.level.calculators;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.bukkit.Material;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import world.bentobox.level.calculators.IslandLevelCalculator.ChunkPair;
+import world.bentobox.level.calculators.SyntheticChunkSnapshot.Layout;
+import world.bentobox.level.config.BlockTable;
+
+/**
+ * Checks that scanning chunks into separate tallies and merging them gives the same results as counting
+ * every block one after another, including how block limits are used up.
+ * @author tastybento
+ *
+ */
+public class ScanTallyTest {
+
+    // Cobblestone limit in the default blockconfig.yml
+    private static final int COBBLESTONE_LIMIT = 10000;
+
+    private CalculatorFixture fixture;
+    private BlockTable table;
+
+    @Before
+    public void setUp() {
+        fixture = new CalculatorFixture();
+        // Blocks are both below and above sea level, so the order the limit is used up in matters
+        when(fixture.addon.getPlugin().getIWM().getSeaHeight(any())).thenReturn(40);
+        table = fixture.blockConfig.getTable(fixture.world);
+    }
+
+    @After
+    public void tearDown() {
+        Mockito.framework().clearInlineMocks();
+    }
+
+    private List<ChunkPair> newChunks() {
+        // Enough mega base chunks to go over the cobblestone limit part way through
+        return List.of(Layout.MEGA_BASE, Layout.SKYBLOCK, Layout.MEGA_BASE, Layout.VOID, Layout.MEGA_BASE, Layout.MEGA_BASE).stream()
+                .map(fixture::newChunk).toList();
+    }
+
+    /**
+     * Test method for {@link world.bentobox.level.calculators.IslandLevelCalculator#mergeTally(ScanTally)}.
+     */
+    @Test
+    public void testMergeSameAsSerial() {
+        // One tally per chunk, as the scan threads make them, merged in chunk order
+        IslandLevelCalculator parallel = fixture.newCalculator();
+        for (ChunkPair cp : newChunks()) {
+            ScanTally tally = new ScanTally(table);
+            parallel.scanAsync(cp, tally);
+            parallel.mergeTally(tally);
+        }
+        // Every chunk one after another
+        IslandLevelCalculator serial = fixture.newCalculator();
+        ScanTally all = new ScanTally(table);
+        newChunks().forEach(cp -> serial.scanAsync(cp, all));
+        serial.mergeTally(all);
+
+        Results p = parallel.getResults();
+        Results s = serial.getResults();
+        assertEquals(s.rawBlockCount.get(), p.rawBlockCount.get());
+        assertEquals(s.underWaterBlockCount.get(), p.underWaterBlockCount.get());
+        assertEquals(s.mdCount.toMap(), p.mdCount.toMap());
+        assertEquals(s.uwCount.toMap(), p.uwCount.toMap());
+        assertEquals(s.ncCount.toMap(), p.ncCount.toMap());
+        assertEquals(s.ofCount.toMap(), p.ofCount.toMap());
+    }
+
+    /**
+     * Test method for {@link world.bentobox.level.calculators.IslandLevelCalculator#mergeTally(ScanTally)}.
+     */
+    @Test
+    public void testMergeUsesUpLimit() {
+        IslandLevelCalculator calc = fixture.newCalculator();
+        for (ChunkPair cp : newChunks()) {
+            ScanTally tally = new ScanTally(table);
+            calc.scanAsync(cp, tally);
+            calc.mergeTally(tally);
+        }
+        Results r = calc.getResults();
+        int cobblestone = r.mdCount.count(Material.COBBLESTONE) + r.uwCount.count(Material.COBBLESTONE);
+        assertTrue(cobblestone > COBBLESTONE_LIMIT);
+        // Everything over the limit is not counted
+        assertEquals(cobblestone - COBBLESTONE_LIMIT, r.ofCount.count(Material.COBBLESTONE));
+    }
+
+    /**
+     * Test method for {@link world.bentobox.level.calculators.ScanTally#add(long, int, boolean, int)}.
+     */
+    @Test
+    public void testAddLimitedRuns() {
+        ScanTally tally = new ScanTally(table);
+        long entry = table.get(Material.COBBLESTONE);
+        tally.add(entry, Material.COBBLESTONE.ordinal(), false, 2);
+        tally.add(entry, Material.COBBLESTONE.ordinal(), false, 3);
+        tally.add(entry, Material.COBBLESTONE.ordinal(), true, 1);
+        tally.add(table.get(Material.STONE), Material.STONE.ordinal(), false, 4);
+        // Runs of the same block are one record, and only limited blocks are recorded
+        assertEquals(4, tally.limitedSize);
+        assertEquals(Material.COBBLESTONE.ordinal() << 1, tally.limited[0]);
+        assertEquals(5, tally.limited[1]);
+        assertEquals(Material.COBBLESTONE.ordinal() << 1 | 1, tally.limited[2]);
+        assertEquals(1, tally.limited[3]);
+        // Limited blocks are valued when they are merged, others straight away
+        assertEquals(4L * BlockTable.getValue(table.get(Material.STONE)), tally.rawBlockCount);
+        assertEquals(5, tally.mdCount.count(Material.COBBLESTONE));
+        assertEquals(1, tally.uwCount.count(Material.COBBLESTONE));
+    }
+}
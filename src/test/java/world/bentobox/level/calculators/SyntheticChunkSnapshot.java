@@ -0,0 +1,200 @@
+package world.bentobox.level.calculators;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Material;
+import org.bukkit.block.Biome;
+import org.bukkit.block.data.BlockData;
+
+/**
+ * Chunk snapshot built in memory, so chunks can be scanned without a server. Used by the benchmarks and the pipeline simulator.
+ * Block data is not kept, so slabs always count as single slabs.
+ * @author tastybento
+ *
+ */
+class SyntheticChunkSnapshot implements ChunkSnapshot {
+
+    /**
+     * Kinds of chunk to scan
+     */
+    enum Layout {
+        /**
+         * Nothing but air, like most of the chunks of a new island
+         */
+        VOID,
+        /**
+         * A small island of dirt and grass with a tree and a chest
+         */
+        SKYBLOCK,
+        /**
+         * Solid from the bottom of the world to y 200 with a mix of blocks, some of them limited
+         */
+        MEGA_BASE
+    }
+
+    // Blocks used for the mega base, picked at random. Cobblestone is limited in the default blockconfig.yml.
+    private static final Material[] PALETTE = {Material.STONE, Material.STONE, Material.STONE, Material.COBBLESTONE,
+            Material.STONE_BRICKS, Material.GLASS, Material.OAK_PLANKS, Material.IRON_BLOCK, Material.HOPPER,
+            Material.SMOOTH_STONE_SLAB, Material.REDSTONE_WIRE, Material.WATER, Material.AIR, Material.SEA_LANTERN};
+
+    private final int minHeight;
+    private final int maxHeight;
+    private final Material[] blocks;
+    private final int[] highest = new int[256];
+    private final boolean[] emptySections;
+
+    /**
+     * @param layout - what the chunk contains
+     * @param minHeight - lowest y of the world
+     * @param maxHeight - highest y of the world, exclusive
+     */
+    SyntheticChunkSnapshot(Layout layout, int minHeight, int maxHeight) {
+        this.minHeight = minHeight;
+        this.maxHeight = maxHeight;
+        blocks = new Material[(maxHeight - minHeight) * 256];
+        Arrays.fill(blocks, Material.AIR);
+        emptySections = new boolean[(maxHeight - minHeight) >> 4];
+        switch (layout) {
+        case SKYBLOCK -> {
+            for (int x = 2; x < 14; x++) {
+                for (int z = 2; z < 14; z++) {
+                    for (int y = 58; y < 64; y++) {
+                        set(x, y, z, Material.DIRT);
+                    }
+                    set(x, 64, z, Material.GRASS_BLOCK);
+                }
+            }
+            for (int y = 65; y < 71; y++) {
+                set(8, y, 8, Material.OAK_LOG);
+            }
+            for (int x = 6; x < 11; x++) {
+                for (int z = 6; z < 11; z++) {
+                    set(x, 71, z, Material.OAK_LEAVES);
+                    set(x, 72, z, Material.OAK_LEAVES);
+                }
+            }
+            set(4, 65, 4, Material.CHEST);
+        }
+        case MEGA_BASE -> {
+            Random random = new Random(1);
+            for (int y = minHeight; y < Math.min(200, maxHeight); y++) {
+                for (int x = 0; x < 16; x++) {
+                    for (int z = 0; z < 16; z++) {
+                        set(x, y, z, PALETTE[random.nextInt(PALETTE.length)]);
+                    }
+                }
+            }
+        }
+        default -> {
+            // All air
+        }
+        }
+        // Height map and empty sections
+        Arrays.fill(highest, minHeight - 1);
+        Arrays.fill(emptySections, true);
+        for (int y = minHeight; y < maxHeight; y++) {
+            for (int x = 0; x < 16; x++) {
+                for (int z = 0; z < 16; z++) {
+                    if (!getBlockType(x, y, z).isAir()) {
+                        highest[z * 16 + x] = y;
+                        emptySections[(y - minHeight) >> 4] = false;
+                    }
+                }
+            }
+        }
+    }
+
+    private int index(int x, int y, int z) {
+        return ((y - minHeight) * 16 + z) * 16 + x;
+    }
+
+    private void set(int x, int y, int z, Material material) {
+        blocks[index(x, y, z)] = material;
+    }
+
+    @Override
+    public int getX() {
+        return 0;
+    }
+
+    @Override
+    public int getZ() {
+        return 0;
+    }
+
+    @Override
+    public String getWorldName() {
+        return "bskyblock_world";
+    }
+
+    @Override
+    public Material getBlockType(int x, int y, int z) {
+        return blocks[index(x, y, z)];
+    }
+
+    @Override
+    public BlockData getBlockData(int x, int y, int z) {
+        return null;
+    }
+
+    @Override
+    @Deprecated
+    public int getData(int x, int y, int z) {
+        return 0;
+    }
+
+    @Override
+    public int getBlockSkyLight(int x, int y, int z) {
+        return 15;
+    }
+
+    @Override
+    public int getBlockEmittedLight(int x, int y, int z) {
+        return 0;
+    }
+
+    @Override
+    public int getHighestBlockYAt(int x, int z) {
+        return highest[z * 16 + x];
+    }
+
+    @Override
+    @Deprecated
+    public Biome getBiome(int x, int z) {
+        return Biome.PLAINS;
+    }
+
+    @Override
+    public Biome getBiome(int x, int y, int z) {
+        return Biome.PLAINS;
+    }
+
+    @Override
+    @Deprecated
+    public double getRawBiomeTemperature(int x, int z) {
+        return 0.8;
+    }
+
+    @Override
+    public double getRawBiomeTemperature(int x, int y, int z) {
+        return 0.8;
+    }
+
+    @Override
+    public long getCaptureFullTime() {
+        return 0;
+    }
+
+    @Override
+    public boolean isSectionEmpty(int sy) {
+        return emptySections[sy];
+    }
+
+    @Override
+    public boolean contains(BlockData block) {
+        return false;
+    }
+
+}